@@ -9,6 +9,8 @@ import com.sih.farmer.repository.UserRepository;
 import com.sih.farmer.security.AuthUtil;
 import com.twilio.rest.api.v2010.account.Message;
 import com.twilio.type.PhoneNumber;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -34,6 +36,7 @@ public class OtpService {
     private final TwilioConfig twilioConfig;
     private final StringRedisTemplate redisTemplate;
     private final AuthUtil authUtil;
+    private final MeterRegistry meterRegistry;
 
     @Value("${otp.expiration.minutes:5}")
     private int otpExpirationMinutes;
@@ -125,11 +128,7 @@ public class OtpService {
                     otp, otpExpirationMinutes
             );
 
-            Message message = Message.creator(
-                    new PhoneNumber(phoneNumber),
-                    new PhoneNumber(twilioConfig.getTwilioPhoneNumber()),
-                    messageBody
-            ).create();
+            Message message = sendSms("otp", phoneNumber, messageBody);
 
             log.info("SMS sent successfully to {} with message SID: {}", phoneNumber, message.getSid());
 
@@ -139,7 +138,28 @@ public class OtpService {
         }
     }
 
-
+    // Twilio's client is not observable, so each call is timed here by message type and outcome
+    private Message sendSms(String type, String phoneNumber, String messageBody) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return Message.creator(
+                    new PhoneNumber(phoneNumber),
+                    new PhoneNumber(twilioConfig.getTwilioPhoneNumber()),
+                    messageBody
+            ).create();
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("twilio.sms.requests")
+                    .description("Twilio message create calls")
+                    .tag("type", type)
+                    .tag("outcome", "none".equals(exception) ? "SUCCESS" : "ERROR")
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
 
     public String sendWeatherAlert(String alert, String city, String phoneNumber) {
         try {
@@ -148,11 +168,7 @@ public class OtpService {
                     city, alert
             );
 
-            Message message = Message.creator(
-                    new PhoneNumber(phoneNumber),
-                    new PhoneNumber(twilioConfig.getTwilioPhoneNumber()),
-                    messageBody
-            ).create();
+            Message message = sendSms("weather_alert", phoneNumber, messageBody);
 
             log.info("Weather alert SMS sent successfully to {} with message SID: {}", phoneNumber, message.getSid());
             return "Weather alert sent successfully";
@@ -32,10 +32,8 @@ public class WeatherService {
     public String getWeatherByCity(String city, String phoneNumber) throws IOException {
         log.info("Fetching weather data for city: {} for phone: {}", city, phoneNumber);
 
-        String url = String.format("%s?units=metric&q=%s&appid=%s", baseUrl, city, apiKey);
-
         try {
-            JsonNode response = restTemplate.getForObject(url, JsonNode.class);
+            JsonNode response = restTemplate.getForObject(weatherUriTemplate(), JsonNode.class, city, apiKey);
 
             if (response != null && response.has("weather") &&
                     response.get("weather").isArray() &&
@@ -74,16 +72,19 @@ public class WeatherService {
         }
     }
 
+    // Templated so the http.client.requests uri tag stays the same for every city and never carries the key
+    private String weatherUriTemplate() {
+        return baseUrl + "?units=metric&q={city}&appid={appid}";
+    }
+
     /**
      * Alternative method that returns JSON format for better frontend integration
      */
     public JsonNode getWeatherDataAsJson(String city, String phoneNumber) throws IOException {
         log.info("Fetching JSON weather data for city: {} for phone: {}", city, phoneNumber);
 
-        String url = String.format("%s?units=metric&q=%s&appid=%s", baseUrl, city, apiKey);
-
         try {
-            JsonNode response = restTemplate.getForObject(url, JsonNode.class);
+            JsonNode response = restTemplate.getForObject(weatherUriTemplate(), JsonNode.class, city, apiKey);
 
             if (response != null && response.has("weather") &&
                     response.get("weather").isArray() &&
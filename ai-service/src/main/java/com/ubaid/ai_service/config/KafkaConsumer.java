@@ -2,34 +2,211 @@ package com.ubaid.ai_service.config;
 
 import com.ubaid.ai_service.model.FertilizerRecommendation;
 import com.ubaid.ai_service.model.SoilData;
+import com.ubaid.ai_service.service.GeminiPriority;
 import com.ubaid.ai_service.service.SoilAIService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Soil-analysis records arrive on two lanes: soil-analysis-priority-topic (interactive) and soil-analysis-topic
+ * (bulk). Both share the Gemini limiter, which prefers interactive calls.
+ * <p>
+ * Polling is decoupled from processing: each record starts an asynchronous Gemini call and the listener
+ * thread moves on to the next record. {@link SoilAnalysisBackpressure} pauses a partition when it has too many
+ * records outstanding or Gemini is saturated. Offsets are acknowledged as records finish and committed by the
+ * container only up to the lowest record still in flight.
+ * <p>
+ * A failed record is handed to the retry tiers configured in {@link SoilAnalysisRetryConfig}; the same
+ * listener consumes those topics. Only once every tier has failed does the record land in the DLT, where the
+ * default recommendation is published so the request does not stay pending.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class KafkaConsumer {
 
+    private static final String RECOMMENDATION_TOPIC = "fertilizer-recommendation-topic";
+
     private final SoilAIService soilAIService;
+    private final KafkaTemplate<String, FertilizerRecommendation> recommendationKafkaTemplate;
+    private final SoilAnalysisBackpressure backpressure;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+    private final boolean keyOrdered;
+
+    // Tail of the processing chain per key, only used in key-ordered mode
+    private final Map<String, Mono<Void>> keyTails = new ConcurrentHashMap<>();
+    private final Counter deadLetters;
+
+    public KafkaConsumer(SoilAIService soilAIService,
+                         KafkaTemplate<String, FertilizerRecommendation> recommendationKafkaTemplate,
+                         SoilAnalysisBackpressure backpressure,
+                         MeterRegistry meterRegistry,
+                         ObjectProvider<Tracer> tracer,
+                         @Value("${kafka.consumer.key-ordered:false}") boolean keyOrdered) {
+        this.soilAIService = soilAIService;
+        this.recommendationKafkaTemplate = recommendationKafkaTemplate;
+        this.backpressure = backpressure;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer.getIfAvailable(() -> Tracer.NOOP);
+        this.keyOrdered = keyOrdered;
+        this.deadLetters = Counter.builder("soil.analysis.dead_letters")
+                .description("Soil analysis records that exhausted every retry tier")
+                .register(meterRegistry);
+    }
+
+    @KafkaListener(id = SoilAnalysisBackpressure.LISTENER_ID, topics = SoilAnalysisBackpressure.TOPIC, groupId = "agriculture-group")
+    public Mono<Void> processSoilData(@Payload SoilData soilData,
+                                      @Header(name = KafkaHeaders.RECEIVED_KEY, required = false) String requestId,
+                                      @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                                      @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+                                      @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long timestamp) {
+        return process(soilData, requestId, topic, partition, timestamp, GeminiPriority.BULK);
+    }
+
+    // Interactive lane: same processing, but its Gemini calls are preferred by the limiter's weighted queue
+    @KafkaListener(id = SoilAnalysisBackpressure.PRIORITY_LISTENER_ID, topics = SoilAnalysisBackpressure.PRIORITY_TOPIC,
+            groupId = "agriculture-group")
+    public Mono<Void> processPrioritySoilData(@Payload SoilData soilData,
+                                              @Header(name = KafkaHeaders.RECEIVED_KEY, required = false) String requestId,
+                                              @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                                              @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+                                              @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long timestamp) {
+        return process(soilData, requestId, topic, partition, timestamp, GeminiPriority.INTERACTIVE);
+    }
 
-    @KafkaListener(topics = "soil-analysis-topic", groupId = "agriculture-group")
-    public void processSoilData(SoilData soilData) {
-        try {
-            System.out.println("Processing soil data for crop: " + soilData.getCropType() +
-                    " in language: " + soilData.getLanguage());
+    private Mono<Void> process(SoilData soilData, String requestId, String topic, int partition, long timestamp,
+                               GeminiPriority priority) {
+        backpressure.onRecordStarted(topic, partition);
+        recordQueueTime(topic, timestamp);
+        Timer.Sample sample = Timer.start(meterRegistry);
 
-            // Generate recommendation (will detect soil type from image)
-            FertilizerRecommendation recommendation = soilAIService.generateFertilizerRecommendation(soilData);
+        System.out.println("Processing soil data for crop: " + soilData.getCropType() +
+                " in language: " + soilData.getLanguage() + ", requestId: " + requestId + ", topic: " + topic);
+
+        Mono<Void> processing = Mono.defer(() -> soilAIService.generateAiRecommendationAsync(soilData))
+                .doOnNext(recommendation -> {
+                    System.out.println("Recommendation generated for crop: " + soilData.getCropType() +
+                            ", Detected soil type: " + recommendation.getDetectedSoilType());
+                    publishRecommendation(requestId, recommendation);
+                    countAttempt(topic, "success", sample);
+                })
+                .doOnError(e -> {
+                    countAttempt(topic, "failure", sample);
+                    System.err.println("Error processing soil data for crop: " + soilData.getCropType() +
+                            " on " + topic + ", Error: " + e.getMessage());
+                })
+                .then()
+                .contextWrite(GeminiPriority.context(priority));
+
+        if (keyOrdered && requestId != null) {
+            processing = chainAfterKey(requestId, processing);
+        }
 
-            System.out.println("Recommendation generated for crop: " + soilData.getCropType() +
-                    ", Detected soil type: " + recommendation.getDetectedSoilType());
+        // The container acknowledges on completion; an error routes the record to the next retry tier
+        return processing.doFinally(signal -> backpressure.onRecordFinished(topic, partition));
+    }
+
+    public void processDeadLetter(@Payload SoilData soilData,
+                                  @Header(name = KafkaHeaders.RECEIVED_KEY, required = false) String requestId,
+                                  @Header(name = KafkaHeaders.DLT_EXCEPTION_MESSAGE, required = false) byte[] error) {
+        deadLetters.increment();
+        log.error("Soil analysis for request {} failed on every retry tier: {}", requestId,
+                error != null ? new String(error, StandardCharsets.UTF_8) : "unknown error");
+        publishRecommendation(requestId, soilAIService.createFallbackRecommendation(soilData, "dead_letter"));
+    }
+
+    /**
+     * Time the record spent between the producer's send and this listener (broker, consumer lag and any retry
+     * delay). Emitted as a span back-dated to the record timestamp and parented on the producer's send span, so it
+     * sits beside the listener's receive span rather than starting before its own parent.
+     */
+    private void recordQueueTime(String topic, long timestamp) {
+        long queuedMs = Math.max(0, System.currentTimeMillis() - timestamp);
+        Timer.builder("soil.analysis.queue.time")
+                .description("Time from record creation to the start of processing")
+                .tag("topic", topic)
+                .register(meterRegistry)
+                .record(queuedMs, TimeUnit.MILLISECONDS);
+
+        // The receive span's parent is the send span propagated in the record headers
+        TraceContext receive = tracer.currentTraceContext().context();
+        if (receive == null || receive.parentId() == null) {
+            return;
+        }
+        TraceContext send = tracer.traceContextBuilder()
+                .traceId(receive.traceId())
+                .spanId(receive.parentId())
+                .sampled(receive.sampled())
+                .build();
+        tracer.spanBuilder()
+                .setParent(send)
+                .name("soil-analysis queued")
+                .tag("messaging.destination.name", topic)
+                .startTimestamp(timestamp, TimeUnit.MILLISECONDS)
+                .start()
+                .end();
+    }
+
+    private void countAttempt(String topic, String outcome, Timer.Sample sample) {
+        Counter.builder("soil.analysis.attempts")
+                .description("Soil analysis processing attempts per retry tier")
+                .tag("tier", topic)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        // Receipt to result, including any wait for a Gemini permit or an earlier record with the same key
+        sample.stop(Timer.builder("soil.analysis.processing")
+                .description("Soil analysis record processing time")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    // Records sharing a key run one after another; different keys still run in parallel
+    private Mono<Void> chainAfterKey(String key, Mono<Void> processing) {
+        AtomicReference<Mono<Void>> chained = new AtomicReference<>();
+        keyTails.compute(key, (k, tail) -> {
+            Mono<Void> previous = tail != null ? tail.onErrorResume(e -> Mono.empty()) : Mono.empty();
+            chained.set(previous.then(processing).cache());
+            return chained.get();
+        });
+        Mono<Void> self = chained.get();
+        return self.doFinally(signal -> keyTails.remove(key, self));
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error processing soil data for crop: " + soilData.getCropType() +
-                    ", Error: " + e.getMessage());
+    private void publishRecommendation(String requestId, FertilizerRecommendation recommendation) {
+        if (requestId == null) {
+            log.warn("Soil analysis record has no request ID; recommendation not published");
+            return;
         }
+        // Copy before stamping the ID: the instance may be shared through the recommendation cache
+        FertilizerRecommendation result = recommendation.toBuilder().requestId(requestId).build();
+        recommendationKafkaTemplate.send(RECOMMENDATION_TOPIC, requestId, result)
+                .whenComplete((sendResult, ex) -> {
+                    if (ex != null) {
+                        log.error("Failed to publish recommendation for request {}: {}", requestId, ex.getMessage());
+                    } else {
+                        log.info("Published recommendation for request {}", requestId);
+                    }
+                });
     }
-}
\ No newline at end of file
+}
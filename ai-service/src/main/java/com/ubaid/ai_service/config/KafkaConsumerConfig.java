@@ -3,41 +3,94 @@ package com.ubaid.ai_service.config;
 
 
 import com.ubaid.ai_service.model.SoilData;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.serializer.DelegatingByTopicDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @Configuration
 @EnableKafka
 public class KafkaConsumerConfig {
 
+    // Topics read with the binary SoilData deserializer (which still accepts JSON records); others are JSON only
+    @Value("${kafka.serde.binary-topics:soil-analysis-topic,soil-analysis-priority-topic}")
+    private List<String> binaryTopics;
+
+    // One listener thread per partition of each soil-analysis lane topic
+    @Value("${kafka.consumer.concurrency:3}")
+    private int concurrency;
+
+    // Small batches keep the overshoot past a pause (records already fetched) bounded
+    @Value("${kafka.consumer.max-poll-records:16}")
+    private int maxPollRecords;
+
+    // Continues the producer's trace from the record headers and opens a span per record
+    @Value("${kafka.observation.enabled:true}")
+    private boolean observationEnabled;
+
+    private final MeterRegistry meterRegistry;
+
+    public KafkaConsumerConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Bean
     public ConsumerFactory<String, SoilData> consumerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         configProps.put(ConsumerConfig.GROUP_ID_CONFIG, "agriculture-group");
-        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
         configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
         configProps.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         configProps.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
         configProps.put(JsonDeserializer.VALUE_DEFAULT_TYPE, SoilData.class);
-        return new DefaultKafkaConsumerFactory<>(configProps);
+        DefaultKafkaConsumerFactory<String, SoilData> factory =
+                new DefaultKafkaConsumerFactory<>(configProps, new StringDeserializer(), valueDeserializer());
+        // Exposes Kafka client metrics, including kafka.consumer.fetch.manager.records.lag per partition
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Deserializer<SoilData> valueDeserializer() {
+        Map<Pattern, Deserializer<?>> delegates = new HashMap<>();
+        for (String topic : binaryTopics) {
+            delegates.put(withRetryTopics(topic), new SoilDataBinaryDeserializer());
+        }
+        return (Deserializer<SoilData>) (Deserializer<?>) new DelegatingByTopicDeserializer(delegates, new JsonDeserializer<>());
+    }
+
+    // A lane topic plus its <topic>-retry-<delayMs> tiers and <topic>-dlt
+    static Pattern withRetryTopics(String topic) {
+        return Pattern.compile(Pattern.quote(topic.trim()) + "(-retry-\\d+|-dlt)?");
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, SoilData> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, SoilData> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency);
+        // Records complete out of order; the container only commits up to the lowest unacknowledged offset
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        factory.getContainerProperties().setObservationEnabled(observationEnabled);
         return factory;
     }
 }
@@ -0,0 +1,81 @@
+package com.ubaid.ai_service.config;
+
+import com.ubaid.ai_service.model.FertilizerRecommendation;
+import com.ubaid.ai_service.model.SoilData;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTopicSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+@Configuration
+public class KafkaProducerConfig {
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${kafka.observation.enabled:true}")
+    private boolean observationEnabled;
+
+    @Value("${kafka.serde.binary-topics:soil-analysis-topic,soil-analysis-priority-topic}")
+    private List<String> binaryTopics;
+
+    @Bean
+    public ProducerFactory<String, FertilizerRecommendation> recommendationProducerFactory() {
+        return new DefaultKafkaProducerFactory<>(jsonProducerConfigs());
+    }
+
+    @Bean
+    public KafkaTemplate<String, FertilizerRecommendation> recommendationKafkaTemplate() {
+        return observed(new KafkaTemplate<>(recommendationProducerFactory()));
+    }
+
+    // Republishes failed soil-analysis records to the retry tiers and the DLT, binary-encoded like the lane topics
+    @Bean
+    public ProducerFactory<String, SoilData> soilDataProducerFactory() {
+        return new DefaultKafkaProducerFactory<>(jsonProducerConfigs(), new StringSerializer(), soilDataSerializer());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Serializer<SoilData> soilDataSerializer() {
+        Map<Pattern, Serializer<?>> delegates = new HashMap<>();
+        for (String topic : binaryTopics) {
+            delegates.put(KafkaConsumerConfig.withRetryTopics(topic), new SoilDataBinarySerializer());
+        }
+        return (Serializer<SoilData>) (Serializer<?>) new DelegatingByTopicSerializer(delegates, new JsonSerializer<>());
+    }
+
+    @Bean
+    public KafkaTemplate<String, SoilData> soilDataKafkaTemplate() {
+        return observed(new KafkaTemplate<>(soilDataProducerFactory()));
+    }
+
+    // Results and retried records carry the originating trace onward in their headers
+    private <V> KafkaTemplate<String, V> observed(KafkaTemplate<String, V> template) {
+        template.setObservationEnabled(observationEnabled);
+        return template;
+    }
+
+    private Map<String, Object> jsonProducerConfigs() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
+        // Disable type headers so consumers bind onto their own model classes
+        configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        return configProps;
+    }
+}
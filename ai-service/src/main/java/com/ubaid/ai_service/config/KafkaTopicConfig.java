@@ -2,8 +2,13 @@ package com.ubaid.ai_service.config;
 
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+import java.time.Duration;
 
 @Configuration
 public class KafkaTopicConfig {
@@ -13,8 +18,20 @@ public class KafkaTopicConfig {
 //        return new NewTopic("soil-analysis-topic", 3, (short) 1);
 //    }
 
+    // How long a result stays queryable; the producer replays this much on every start
+    @Value("${kafka.results.retention:24h}")
+    private Duration resultRetention;
+
+    // Keyed by request ID and compacted, so the topic holds the latest result per request; results older
+    // than the retention are deleted so the topic does not grow by one key per request forever
     @Bean
     public NewTopic fertilizerRecommendationTopic() {
-        return new NewTopic("fertilizer-recommendation-topic", 3, (short) 1);
+        return TopicBuilder.name("fertilizer-recommendation-topic")
+                .partitions(3)
+                .replicas(1)
+                .config(TopicConfig.CLEANUP_POLICY_CONFIG,
+                        TopicConfig.CLEANUP_POLICY_COMPACT + "," + TopicConfig.CLEANUP_POLICY_DELETE)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(resultRetention.toMillis()))
+                .build();
     }
 }
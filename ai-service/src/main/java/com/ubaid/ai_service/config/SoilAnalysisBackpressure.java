@@ -0,0 +1,166 @@
+package com.ubaid.ai_service.config;
+
+import com.ubaid.ai_service.service.GeminiRateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pauses soil-analysis partitions instead of blocking the listener thread when there is no room for more
+ * Gemini work. The consumer keeps polling (so it stays in the group) but receives nothing for paused
+ * partitions; a periodic check resumes a partition once its in-flight count has drained to the resume threshold.
+ * <p>
+ * Both lanes pause when a partition has {@code max-in-flight-per-partition} records running. Only the bulk lane
+ * also pauses while the Gemini limiter has callers queuing: interactive records keep flowing and win the
+ * limiter's weighted queue instead.
+ */
+@Component
+@Slf4j
+public class SoilAnalysisBackpressure {
+
+    static final String LISTENER_ID = "soil-analysis-listener";
+    static final String PRIORITY_LISTENER_ID = "soil-analysis-priority-listener";
+    static final String TOPIC = "soil-analysis-topic";
+    static final String PRIORITY_TOPIC = "soil-analysis-priority-topic";
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final GeminiRateLimiter rateLimiter;
+    private final int maxInFlightPerPartition;
+    private final int resumeThreshold;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final Disposable resumeCheck;
+
+    public SoilAnalysisBackpressure(KafkaListenerEndpointRegistry listenerRegistry,
+                                    GeminiRateLimiter rateLimiter,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${kafka.consumer.max-in-flight-per-partition:8}") int maxInFlightPerPartition,
+                                    @Value("${kafka.consumer.backpressure.resume-threshold:4}") int resumeThreshold,
+                                    @Value("${kafka.consumer.backpressure.check-interval:500ms}") Duration checkInterval) {
+        this.listenerRegistry = listenerRegistry;
+        this.rateLimiter = rateLimiter;
+        this.maxInFlightPerPartition = maxInFlightPerPartition;
+        this.resumeThreshold = Math.min(resumeThreshold, maxInFlightPerPartition - 1);
+
+        for (Lane lane : List.of(new Lane(TOPIC, LISTENER_ID, true, meterRegistry),
+                new Lane(PRIORITY_TOPIC, PRIORITY_LISTENER_ID, false, meterRegistry))) {
+            lanes.put(lane.topic, lane);
+        }
+
+        long intervalMillis = checkInterval.toMillis();
+        this.resumeCheck = Schedulers.parallel().schedulePeriodically(this::resumeReady,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Retry-tier topics are paused/resumed by the retry infrastructure itself, so only the lane topics are tracked
+    public void onRecordStarted(String topic, int partition) {
+        Lane lane = lanes.get(topic);
+        if (lane == null) {
+            return;
+        }
+        int running = lane.inFlight.computeIfAbsent(partition, p -> new AtomicInteger()).incrementAndGet();
+        if (running >= maxInFlightPerPartition || (lane.pauseOnSaturation && rateLimiter.isSaturated())) {
+            pause(lane, partition);
+        }
+    }
+
+    public void onRecordFinished(String topic, int partition) {
+        Lane lane = lanes.get(topic);
+        if (lane != null) {
+            lane.inFlight.get(partition).decrementAndGet();
+        }
+    }
+
+    // Pause and resume decide and call the container under the lane's lock; otherwise a resume decided just
+    // before a fresh pause could land after it and leave the partition consuming while it is tracked as paused
+    private void pause(Lane lane, int partition) {
+        synchronized (lane) {
+            if (lane.pausedSince.containsKey(partition)) {
+                return;
+            }
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(lane.listenerId);
+            if (container == null) {
+                return;
+            }
+            lane.pausedSince.put(partition, System.nanoTime());
+            container.pausePartition(new TopicPartition(lane.topic, partition));
+        }
+        log.info("Paused {}-{}: {} records in flight, Gemini limiter saturated={}",
+                lane.topic, partition, lane.inFlight.get(partition).get(), rateLimiter.isSaturated());
+    }
+
+    private void resumeReady() {
+        boolean saturated = rateLimiter.isSaturated();
+        for (Lane lane : lanes.values()) {
+            if (lane.pausedSince.isEmpty() || (lane.pauseOnSaturation && saturated)) {
+                continue;
+            }
+            synchronized (lane) {
+                MessageListenerContainer container = listenerRegistry.getListenerContainer(lane.listenerId);
+                Iterator<Map.Entry<Integer, Long>> paused = lane.pausedSince.entrySet().iterator();
+                while (paused.hasNext()) {
+                    Map.Entry<Integer, Long> entry = paused.next();
+                    int partition = entry.getKey();
+                    if (lane.inFlight.get(partition).get() > resumeThreshold) {
+                        continue;
+                    }
+                    paused.remove();
+                    if (container != null) {
+                        container.resumePartition(new TopicPartition(lane.topic, partition));
+                    }
+                    lane.pausedTime.record(System.nanoTime() - entry.getValue(), TimeUnit.NANOSECONDS);
+                    log.info("Resumed {}-{}", lane.topic, partition);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        resumeCheck.dispose();
+    }
+
+    private static final class Lane {
+        private final String topic;
+        private final String listenerId;
+        private final boolean pauseOnSaturation;
+        private final Map<Integer, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        // Partition -> nanoTime it was paused at
+        private final Map<Integer, Long> pausedSince = new ConcurrentHashMap<>();
+        private final Timer pausedTime;
+
+        private Lane(String topic, String listenerId, boolean pauseOnSaturation, MeterRegistry meterRegistry) {
+            this.topic = topic;
+            this.listenerId = listenerId;
+            this.pauseOnSaturation = pauseOnSaturation;
+
+            Gauge.builder("kafka.consumer.backpressure.paused.partitions", pausedSince, Map::size)
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            Gauge.builder("kafka.consumer.backpressure.in_flight", inFlight,
+                            counts -> counts.values().stream().mapToInt(AtomicInteger::get).sum())
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            this.pausedTime = Timer.builder("kafka.consumer.backpressure.paused.time")
+                    .description("Time a partition spent paused waiting for Gemini capacity")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+        }
+    }
+}
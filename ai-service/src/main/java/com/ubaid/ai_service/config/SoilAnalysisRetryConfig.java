@@ -0,0 +1,85 @@
+package com.ubaid.ai_service.config;
+
+import com.ubaid.ai_service.model.SoilData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.BackOffContext;
+import org.springframework.retry.backoff.BackOffInterruptedException;
+import org.springframework.retry.backoff.Sleeper;
+import org.springframework.retry.backoff.SleepingBackOffPolicy;
+import org.springframework.retry.backoff.ThreadWaitSleeper;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Non-blocking retries for both soil-analysis lanes: a failed record is republished to
+ * {@code <lane-topic>-retry-<delayMs>} for each configured delay (10s / 1m / 10m by default) and finally
+ * to {@code <lane-topic>-dlt}. Each retry topic is consumed only once its delay has elapsed, so the main
+ * partitions keep flowing while failures wait off the hot path.
+ */
+@Configuration
+public class SoilAnalysisRetryConfig {
+
+    @Value("${kafka.retry.delays:10s,1m,10m}")
+    private List<Duration> retryDelays;
+
+    @Bean
+    public RetryTopicConfiguration soilAnalysisRetryTopics(KafkaTemplate<String, SoilData> soilDataKafkaTemplate) {
+        return RetryTopicConfigurationBuilder.newInstance()
+                .includeTopics(List.of(SoilAnalysisBackpressure.TOPIC, SoilAnalysisBackpressure.PRIORITY_TOPIC))
+                .maxAttempts(retryDelays.size() + 1)
+                .customBackoff(new TieredBackOffPolicy(retryDelays.stream().mapToLong(Duration::toMillis).toArray(),
+                        new ThreadWaitSleeper()))
+                // Bad input will not get better with time
+                .notRetryOn(IllegalArgumentException.class)
+                .dltHandlerMethod("kafkaConsumer", "processDeadLetter")
+                .autoCreateTopicsWith(3, (short) 1)
+                .create(soilDataKafkaTemplate);
+    }
+
+    /**
+     * Explicit per-attempt delays; retry topics are derived from the delays this policy reports.
+     */
+    static final class TieredBackOffPolicy implements SleepingBackOffPolicy<TieredBackOffPolicy> {
+
+        private final long[] delays;
+        private final Sleeper sleeper;
+
+        TieredBackOffPolicy(long[] delays, Sleeper sleeper) {
+            this.delays = delays;
+            this.sleeper = sleeper;
+        }
+
+        @Override
+        public TieredBackOffPolicy withSleeper(Sleeper sleeper) {
+            return new TieredBackOffPolicy(delays, sleeper);
+        }
+
+        @Override
+        public BackOffContext start(RetryContext context) {
+            return new AttemptContext();
+        }
+
+        @Override
+        public void backOff(BackOffContext backOffContext) throws BackOffInterruptedException {
+            AttemptContext attempts = (AttemptContext) backOffContext;
+            long delay = delays[Math.min(attempts.attempt++, delays.length - 1)];
+            try {
+                sleeper.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BackOffInterruptedException("Thread interrupted while sleeping", e);
+            }
+        }
+
+        private static final class AttemptContext implements BackOffContext {
+            private int attempt;
+        }
+    }
+}
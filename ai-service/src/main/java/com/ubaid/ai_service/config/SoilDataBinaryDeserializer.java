@@ -0,0 +1,109 @@
+package com.ubaid.ai_service.config;
+
+import com.ubaid.ai_service.model.SoilData;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Reads the producer's compact binary {@link SoilData} encoding (magic {@code 0x53 0x44}, version 1; see the
+ * producer's SoilDataBinarySerializer for the layout). Records without the magic prefix are handed to the
+ * JSON deserializer, so topics can be switched to binary without draining JSON records first.
+ */
+public class SoilDataBinaryDeserializer implements Deserializer<SoilData> {
+
+    private static final byte MAGIC_0 = 0x53;
+    private static final byte MAGIC_1 = 0x44;
+    private static final byte VERSION = 1;
+
+    private static final SoilData.AreaUnit[] AREA_UNITS = SoilData.AreaUnit.values();
+    private static final SoilData.Season[] SEASONS = SoilData.Season.values();
+
+    private final JsonDeserializer<SoilData> jsonFallback = new JsonDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonFallback.configure(configs, isKey);
+    }
+
+    @Override
+    public SoilData deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length < 3 || data[0] != MAGIC_0 || data[1] != MAGIC_1) {
+            return jsonFallback.deserialize(topic, data);
+        }
+        if (data[2] != VERSION) {
+            throw new SerializationException("Unsupported SoilData binary version " + data[2] + " on topic " + topic);
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data, 3, data.length - 3);
+            SoilData soilData = new SoilData();
+            soilData.setSoilType(readString(buffer));
+            soilData.setSoilImageRef(readString(buffer));
+            soilData.setCropType(readString(buffer));
+            soilData.setLocation(readString(buffer));
+            soilData.setLanguage(readString(buffer));
+            if (buffer.get() == 1) {
+                soilData.setAreaValue(buffer.getDouble());
+            }
+            soilData.setAreaUnit(readEnum(buffer, AREA_UNITS));
+            soilData.setSeason(readEnum(buffer, SEASONS));
+            int imageLength = buffer.getInt();
+            if (imageLength >= 0) {
+                byte[] image = new byte[imageLength];
+                buffer.get(image);
+                soilData.setSoilImage(image);
+            }
+            return soilData;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated SoilData record on topic " + topic, e);
+        }
+    }
+
+    @Override
+    public SoilData deserialize(String topic, Headers headers, byte[] data) {
+        if (data != null && data.length >= 2 && data[0] == MAGIC_0 && data[1] == MAGIC_1) {
+            return deserialize(topic, data);
+        }
+        // JSON path keeps header-aware behaviour
+        return jsonFallback.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonFallback.close();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static <E extends Enum<E>> E readEnum(ByteBuffer buffer, E[] values) {
+        int ordinal = buffer.get();
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new SerializationException("Unknown " + values[0].getDeclaringClass().getSimpleName() + " ordinal " + ordinal);
+        }
+        return values[ordinal];
+    }
+}
@@ -0,0 +1,82 @@
+package com.ubaid.ai_service.config;
+
+import com.ubaid.ai_service.model.SoilData;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ai-service side of the producer's SoilDataBinarySerializer, used when failed soil-analysis records are
+ * republished to the retry tiers and the DLT so they keep the same compact encoding (and claim-check reference)
+ * as on the lane topics. Must stay byte-for-byte identical to the producer's encoder.
+ * <p>
+ * Layout (big-endian): magic {@code 0x53 0x44}, version byte, then in order soilType, soilImageRef,
+ * cropType, location, language as length-prefixed UTF-8 (int length, -1 for null), areaValue as a
+ * presence byte plus double, areaUnit and season as ordinal bytes (-1 for null), and finally the raw image
+ * bytes length-prefixed like the strings. Enum constants may only be appended, never reordered.
+ * The exact record size is computed first so each record is written into a single right-sized array.
+ */
+public class SoilDataBinarySerializer implements Serializer<SoilData> {
+
+    static final byte MAGIC_0 = 0x53;
+    static final byte MAGIC_1 = 0x44;
+    static final byte VERSION = 1;
+
+    @Override
+    public byte[] serialize(String topic, SoilData data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            byte[] soilType = utf8(data.getSoilType());
+            byte[] soilImageRef = utf8(data.getSoilImageRef());
+            byte[] cropType = utf8(data.getCropType());
+            byte[] location = utf8(data.getLocation());
+            byte[] language = utf8(data.getLanguage());
+            byte[] image = data.getSoilImage();
+
+            int size = 3
+                    + sizeOf(soilType) + sizeOf(soilImageRef) + sizeOf(cropType) + sizeOf(location) + sizeOf(language)
+                    + 1 + (data.getAreaValue() != null ? Double.BYTES : 0)
+                    + 2
+                    + sizeOf(image);
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION);
+            putBytes(buffer, soilType);
+            putBytes(buffer, soilImageRef);
+            putBytes(buffer, cropType);
+            putBytes(buffer, location);
+            putBytes(buffer, language);
+            if (data.getAreaValue() != null) {
+                buffer.put((byte) 1).putDouble(data.getAreaValue());
+            } else {
+                buffer.put((byte) 0);
+            }
+            buffer.put(data.getAreaUnit() != null ? (byte) data.getAreaUnit().ordinal() : -1);
+            buffer.put(data.getSeason() != null ? (byte) data.getSeason().ordinal() : -1);
+            putBytes(buffer, image);
+            return buffer.array();
+        } catch (RuntimeException e) {
+            throw new SerializationException("Failed to serialize SoilData for topic " + topic, e);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int sizeOf(byte[] value) {
+        return Integer.BYTES + (value != null ? value.length : 0);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+}
@@ -1,4 +1,5 @@
 package com.ubaid.ai_service.config;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -7,8 +8,10 @@ import org.springframework.web.reactive.function.client.WebClient;
 public class WebClientConfig {
 
     @Bean
-    public WebClient.Builder webClientBuilder() {
+    public WebClient.Builder webClientBuilder(ObservationRegistry observationRegistry) {
+        // Replaces Boot's builder, so the registry is wired here to keep http.client.requests for Gemini/ElevenLabs
         return WebClient.builder()
+                .observationRegistry(observationRegistry)
                 .codecs(configurer -> {
                     configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024); // 10MB
                 });
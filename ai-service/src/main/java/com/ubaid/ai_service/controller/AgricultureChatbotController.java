@@ -2,6 +2,8 @@ package com.ubaid.ai_service.controller;
 
 import com.ubaid.ai_service.service.AgricultureChatbotService;
 import com.ubaid.ai_service.service.TextToSpeechService;
+import com.ubaid.ai_service.service.UploadSpooler;
+import com.ubaid.ai_service.util.SpooledUpload;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
@@ -10,8 +12,11 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 
 import java.util.Arrays;
@@ -27,9 +32,10 @@ public class AgricultureChatbotController {
 
     private final AgricultureChatbotService chatbotService;
     private final TextToSpeechService textToSpeechService;
+    private final UploadSpooler uploadSpooler;
 
     @PostMapping(value = "/chat", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<AgricultureChatbotService.ChatbotResponse> chatWithBot(
+    public Mono<ResponseEntity<AgricultureChatbotService.ChatbotResponse>> chatWithBot(
             @RequestParam("message") @NotBlank @Size(max = 1000) String message,
             @RequestParam(value = "image", required = false) MultipartFile image,
             @RequestParam(value = "sessionId", required = false) String sessionId,
@@ -43,67 +49,136 @@ public class AgricultureChatbotController {
 
             // Validate language parameter
             if (!isValidLanguage(language)) {
-                return ResponseEntity.badRequest()
+                return Mono.just(ResponseEntity.badRequest()
                         .body(new AgricultureChatbotService.ChatbotResponse(
                                 "Invalid language code. Supported languages: en, hi, bn, te, ta, mr, gu, kn, ml, pa, or",
                                 false,
                                 "INVALID_LANGUAGE",
                                 sessionId
-                        ));
+                        )));
             }
 
-            // Extract image bytes if present
-            byte[] imageBytes = null;
+            // Spool the image if present; large images are mapped from disk rather than copied onto the heap
+            SpooledUpload upload = null;
             if (image != null && !image.isEmpty()) {
                 // Validate image size (max 5MB)
                 if (image.getSize() > 5 * 1024 * 1024) {
-                    return ResponseEntity.badRequest()
+                    return Mono.just(ResponseEntity.badRequest()
                             .body(new AgricultureChatbotService.ChatbotResponse(
                                     "Image size too large. Please upload an image smaller than 5MB.",
                                     false,
                                     "IMAGE_SIZE_ERROR",
                                     sessionId
-                            ));
+                            )));
                 }
 
                 // Validate image type
                 String contentType = image.getContentType();
                 if (contentType == null || !isValidImageType(contentType)) {
-                    return ResponseEntity.badRequest()
+                    return Mono.just(ResponseEntity.badRequest()
                             .body(new AgricultureChatbotService.ChatbotResponse(
                                     "Invalid image format. Please upload JPEG, PNG, or WebP images only.",
                                     false,
                                     "INVALID_IMAGE_TYPE",
                                     sessionId
-                            ));
+                            )));
                 }
 
-                imageBytes = image.getBytes();
-                log.info("Received image upload - Size: {} bytes, Type: {}", imageBytes.length, contentType);
+                upload = uploadSpooler.spool(image);
+                log.info("Received image upload - Size: {} bytes, Type: {}", upload.size(), contentType);
             }
 
             // Process the chat request with language support
-            AgricultureChatbotService.ChatbotResponse response = chatbotService.processChat(message, imageBytes, sessionId, language);
-
-            log.info("Chat processed - SessionId: {}, Language: {}, Success: {}, HasImage: {}",
-                    sessionId, language, response.isSuccess(), imageBytes != null);
-
-            return ResponseEntity.ok(response);
+            String resolvedSessionId = sessionId;
+            SpooledUpload spooled = upload;
+            boolean hasImage = spooled != null;
+            return chatbotService.processChatAsync(message, hasImage ? spooled.buffer() : null, resolvedSessionId, language)
+                    .map(response -> {
+                        log.info("Chat processed - SessionId: {}, Language: {}, Success: {}, HasImage: {}",
+                                resolvedSessionId, language, response.isSuccess(), hasImage);
+                        return ResponseEntity.ok(response);
+                    })
+                    .doFinally(signal -> close(spooled));
 
         } catch (Exception e) {
             log.error("Error in chat endpoint - SessionId: {}, Language: {}, Error: {}", sessionId, language, e.getMessage());
-            return ResponseEntity.internalServerError()
+            return Mono.just(ResponseEntity.internalServerError()
                     .body(new AgricultureChatbotService.ChatbotResponse(
                             "Technical error occurred. Please try again with a clear agricultural question.",
                             false,
                             "SERVER_ERROR",
                             sessionId != null ? sessionId : UUID.randomUUID().toString()
-                    ));
+                    )));
+        }
+    }
+
+    @PostMapping(value = "/chat/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Object>>> streamChatWithBot(
+            @RequestParam("message") @NotBlank @Size(max = 1000) String message,
+            @RequestParam(value = "image", required = false) MultipartFile image,
+            @RequestParam(value = "sessionId", required = false) String sessionId,
+            @RequestParam(value = "language", defaultValue = "en") String language) {
+
+        String resolvedSessionId = sessionId == null || sessionId.trim().isEmpty()
+                ? UUID.randomUUID().toString()
+                : sessionId;
+
+        try {
+            // Validate language parameter
+            if (!isValidLanguage(language)) {
+                return ResponseEntity.badRequest()
+                        .body(Flux.just(errorEvent(resolvedSessionId, "INVALID_LANGUAGE",
+                                "Invalid language code. Supported languages: en, hi, bn, te, ta, mr, gu, kn, ml, pa, or")));
+            }
+
+            // Spool the image if present (same limits as /chat)
+            SpooledUpload upload = null;
+            if (image != null && !image.isEmpty()) {
+                if (image.getSize() > 5 * 1024 * 1024) {
+                    return ResponseEntity.badRequest()
+                            .body(Flux.just(errorEvent(resolvedSessionId, "IMAGE_SIZE_ERROR",
+                                    "Image size too large. Please upload an image smaller than 5MB.")));
+                }
+
+                String contentType = image.getContentType();
+                if (contentType == null || !isValidImageType(contentType)) {
+                    return ResponseEntity.badRequest()
+                            .body(Flux.just(errorEvent(resolvedSessionId, "INVALID_IMAGE_TYPE",
+                                    "Invalid image format. Please upload JPEG, PNG, or WebP images only.")));
+                }
+
+                upload = uploadSpooler.spool(image);
+            }
+
+            // First event carries the session so the client can correlate before any token arrives
+            Flux<ServerSentEvent<Object>> events = Flux.concat(
+                    Flux.just(ServerSentEvent.<Object>builder().event("session").data(resolvedSessionId).build()),
+                    chatbotService.streamChat(message, upload != null ? upload.buffer() : null, resolvedSessionId, language)
+                            .map(token -> ServerSentEvent.<Object>builder().event("token").data(token).build()),
+                    Flux.just(ServerSentEvent.<Object>builder().event("done").data(resolvedSessionId).build())
+            ).onErrorResume(AgricultureChatbotService.ChatbotStreamException.class,
+                    e -> Flux.just(errorEvent(resolvedSessionId, e.getResponseType(), e.getMessage())));
+            SpooledUpload spooled = upload;
+            // Also runs when the client disconnects mid-stream
+            events = events.doFinally(signal -> close(spooled));
+
+            return ResponseEntity.ok()
+                    .header("X-Session-Id", resolvedSessionId)
+                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .header("X-Accel-Buffering", "no") // Disable proxy buffering so tokens reach slow clients immediately
+                    .body(events);
+
+        } catch (Exception e) {
+            log.error("Error in streaming chat endpoint - SessionId: {}, Language: {}, Error: {}",
+                    resolvedSessionId, language, e.getMessage());
+            return ResponseEntity.internalServerError()
+                    .body(Flux.just(errorEvent(resolvedSessionId, "SERVER_ERROR",
+                            "Technical error occurred. Please try again with a clear agricultural question.")));
         }
     }
 
     @PostMapping(value = "/chat-with-audio", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = "audio/mpeg")
-    public ResponseEntity<byte[]> chatWithBotAndAudio(
+    public Mono<ResponseEntity<byte[]>> chatWithBotAndAudio(
             @RequestParam("message") @NotBlank @Size(max = 1000) String message,
             @RequestParam(value = "image", required = false) MultipartFile image,
             @RequestParam(value = "sessionId", required = false) String sessionId,
@@ -120,76 +195,86 @@ public class AgricultureChatbotController {
             // Validate language parameter
             if (!isValidLanguage(language)) {
                 String errorMessage = "{\"error\":\"Invalid language code\"}";
-                return ResponseEntity.badRequest()
+                return Mono.just(ResponseEntity.badRequest()
                         .contentType(MediaType.APPLICATION_JSON)
-                        .body(errorMessage.getBytes());
+                        .body(errorMessage.getBytes()));
             }
 
-            // Extract image bytes if present
-            byte[] imageBytes = null;
+            // Spool the image if present
+            SpooledUpload upload = null;
             if (image != null && !image.isEmpty()) {
                 // Validate image size and type (same as above)
                 if (image.getSize() > 5 * 1024 * 1024) {
                     String errorMessage = "{\"error\":\"Image size too large\"}";
-                    return ResponseEntity.badRequest()
+                    return Mono.just(ResponseEntity.badRequest()
                             .contentType(MediaType.APPLICATION_JSON)
-                            .body(errorMessage.getBytes());
+                            .body(errorMessage.getBytes()));
                 }
 
                 String contentType = image.getContentType();
                 if (contentType == null || !isValidImageType(contentType)) {
                     String errorMessage = "{\"error\":\"Invalid image format\"}";
-                    return ResponseEntity.badRequest()
+                    return Mono.just(ResponseEntity.badRequest()
                             .contentType(MediaType.APPLICATION_JSON)
-                            .body(errorMessage.getBytes());
+                            .body(errorMessage.getBytes()));
                 }
 
-                imageBytes = image.getBytes();
+                upload = uploadSpooler.spool(image);
             }
 
             // Process the chat request
-            AgricultureChatbotService.ChatbotResponse chatResponse = chatbotService.processChat(message, imageBytes, sessionId, language);
-
-            if (!chatResponse.isSuccess()) {
-                // Return error as JSON
-                String errorMessage = String.format("{\"error\":\"%s\"}",
-                        chatResponse.getMessage().replace("\"", "'"));
-                return ResponseEntity.badRequest()
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(errorMessage.getBytes());
-            }
-
-            // Convert AI response to speech
-            String modelId = getModelIdForLanguage(language);
-            byte[] audioBytes = textToSpeechService.convertTextToSpeech(
-                    chatResponse.getMessage(), voiceId, outputFormat, modelId);
-
-            // Set appropriate headers for audio response
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("audio/mpeg"));
-            headers.setContentLength(audioBytes.length);
-            headers.add("Content-Disposition", "attachment; filename=\"agriculture_response.mp3\"");
-            headers.add("X-Session-Id", sessionId);
-            headers.add("X-Response-Type", chatResponse.getResponseType());
-            headers.add("X-Language", language);
-
-            log.info("Chat with audio processed - SessionId: {}, Language: {}, Audio size: {} bytes",
-                    sessionId, language, audioBytes.length);
-
-            return new ResponseEntity<>(audioBytes, headers, HttpStatus.OK);
+            String resolvedSessionId = sessionId;
+            SpooledUpload spooled = upload;
+            return chatbotService.processChatAsync(message, spooled != null ? spooled.buffer() : null, resolvedSessionId, language)
+                    .flatMap(chatResponse -> {
+                        if (!chatResponse.isSuccess()) {
+                            // Return error as JSON
+                            String errorMessage = String.format("{\"error\":\"%s\"}",
+                                    chatResponse.getMessage().replace("\"", "'"));
+                            return Mono.just(ResponseEntity.badRequest()
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .body(errorMessage.getBytes()));
+                        }
+
+                        // Convert AI response to speech
+                        String modelId = getModelIdForLanguage(language);
+                        return textToSpeechService.convertTextToSpeechAsync(
+                                        chatResponse.getMessage(), voiceId, outputFormat, modelId)
+                                .map(audioBytes -> {
+                                    // Set appropriate headers for audio response
+                                    HttpHeaders headers = new HttpHeaders();
+                                    headers.setContentType(MediaType.parseMediaType("audio/mpeg"));
+                                    headers.setContentLength(audioBytes.length);
+                                    headers.add("Content-Disposition", "attachment; filename=\"agriculture_response.mp3\"");
+                                    headers.add("X-Session-Id", resolvedSessionId);
+                                    headers.add("X-Response-Type", chatResponse.getResponseType());
+                                    headers.add("X-Language", language);
+
+                                    log.info("Chat with audio processed - SessionId: {}, Language: {}, Audio size: {} bytes",
+                                            resolvedSessionId, language, audioBytes.length);
+
+                                    return new ResponseEntity<>(audioBytes, headers, HttpStatus.OK);
+                                });
+                    })
+                    .onErrorResume(e -> Mono.just(audioErrorResponse(e, resolvedSessionId, language)))
+                    .doFinally(signal -> close(spooled));
 
         } catch (Exception e) {
-            log.error("Error in chat with audio endpoint - SessionId: {}, Language: {}, Error: {}",
-                    sessionId, language, e.getMessage());
-
-            String errorMessage = String.format("{\"error\":\"Technical error: %s\"}",
-                    e.getMessage().replace("\"", "'"));
-            return ResponseEntity.internalServerError()
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(errorMessage.getBytes());
+            return Mono.just(audioErrorResponse(e, sessionId, language));
         }
     }
 
+    private ResponseEntity<byte[]> audioErrorResponse(Throwable e, String sessionId, String language) {
+        log.error("Error in chat with audio endpoint - SessionId: {}, Language: {}, Error: {}",
+                sessionId, language, e.getMessage());
+
+        String errorMessage = String.format("{\"error\":\"Technical error: %s\"}",
+                String.valueOf(e.getMessage()).replace("\"", "'"));
+        return ResponseEntity.internalServerError()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(errorMessage.getBytes());
+    }
+
     @PostMapping(value = "/text-to-speech")
     public ResponseEntity<byte[]> convertResponseToAudio(
             @RequestParam("text") @NotBlank @Size(max = 5000) String text,
@@ -227,6 +312,19 @@ public class AgricultureChatbotController {
         }
     }
 
+    private void close(SpooledUpload upload) {
+        if (upload != null) {
+            upload.close();
+        }
+    }
+
+    private ServerSentEvent<Object> errorEvent(String sessionId, String responseType, String message) {
+        return ServerSentEvent.<Object>builder()
+                .event("error")
+                .data(new AgricultureChatbotService.ChatbotResponse(message, false, responseType, sessionId))
+                .build();
+    }
+
     private boolean isValidLanguage(String language) {
         return Arrays.asList("en", "hi", "bn", "te", "ta", "mr", "gu", "kn", "ml", "pa", "or")
                 .contains(language.toLowerCase());
@@ -4,11 +4,14 @@ import com.ubaid.ai_service.model.FertilizerRecommendation;
 import com.ubaid.ai_service.model.SoilData;
 import com.ubaid.ai_service.service.SoilAIService;
 import com.ubaid.ai_service.service.SoilHealthCardService;
+import com.ubaid.ai_service.service.UploadSpooler;
+import com.ubaid.ai_service.util.SpooledUpload;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 
@@ -21,9 +24,10 @@ public class FertilizerController {
 
     private final SoilAIService soilAIService;
     private final SoilHealthCardService soilHealthCardService;
+    private final UploadSpooler uploadSpooler;
 
     @PostMapping("/analyze")
-    public ResponseEntity<FertilizerRecommendation> analyzeSoilAndRecommend(
+    public Mono<ResponseEntity<FertilizerRecommendation>> analyzeSoilAndRecommend(
             @RequestParam("cropType") String cropType,
             @RequestParam("areaValue") Double areaValue,
             @RequestParam("areaUnit") SoilData.AreaUnit areaUnit,
@@ -67,11 +71,13 @@ public class FertilizerController {
                 soilData.setSoilType(soilType.trim());
             }
 
-            // Handle soil image if provided
+            // Handle soil image if provided (large images are mapped from disk rather than copied onto the heap)
+            SpooledUpload upload = null;
             if (soilImage != null && !soilImage.isEmpty()) {
                 try {
-                    soilData.setSoilImage(soilImage.getBytes());
-                    log.info("Soil image received for analysis, size: {} bytes", soilImage.getSize());
+                    upload = uploadSpooler.spool(soilImage);
+                    soilData.setSoilImageBuffer(upload.buffer());
+                    log.info("Soil image received for analysis, size: {} bytes", upload.size());
                 } catch (IOException e) {
                     log.error("Error processing soil image", e);
                     throw new IllegalArgumentException("Error processing soil image");
@@ -79,24 +85,37 @@ public class FertilizerController {
             }
 
             log.info("Processing soil analysis request: CropType={}, SoilTypeSource={}, HasImage={}",
-                    cropType, soilData.getSoilTypeSource(), soilData.getSoilImage() != null);
+                    cropType, soilData.getSoilTypeSource(), upload != null);
 
             // Generate recommendation using AI
-            FertilizerRecommendation recommendation = soilAIService.generateFertilizerRecommendation(soilData);
-
-            return ResponseEntity.ok(recommendation);
+            SpooledUpload spooled = upload;
+            return soilAIService.generateFertilizerRecommendationAsync(soilData)
+                    .map(ResponseEntity::ok)
+                    .onErrorResume(IllegalArgumentException.class, e -> {
+                        log.error("Rejected soil image: {}", e.getMessage());
+                        return Mono.just(ResponseEntity.badRequest().body(null));
+                    })
+                    .onErrorResume(e -> {
+                        log.error("Error generating fertilizer recommendation", e);
+                        return Mono.just(ResponseEntity.internalServerError().body(null));
+                    })
+                    .doFinally(signal -> {
+                        if (spooled != null) {
+                            spooled.close();
+                        }
+                    });
 
         } catch (IllegalArgumentException e) {
             log.error("Validation error: {}", e.getMessage());
-            return ResponseEntity.badRequest().body(null);
+            return Mono.just(ResponseEntity.badRequest().body(null));
         } catch (Exception e) {
             log.error("Error generating fertilizer recommendation", e);
-            return ResponseEntity.internalServerError().body(null);
+            return Mono.just(ResponseEntity.internalServerError().body(null));
         }
     }
 
     @PostMapping("/analyze-health-card")
-    public ResponseEntity<FertilizerRecommendation> analyzeSoilHealthCard(
+    public Mono<ResponseEntity<FertilizerRecommendation>> analyzeSoilHealthCard(
             @RequestParam("healthCardImage") MultipartFile healthCardImage,
             @RequestParam(value = "language", defaultValue = "en") String language,
             @RequestParam(value = "overrideCropType", required = false) String overrideCropType,
@@ -128,55 +147,64 @@ public class FertilizerController {
             log.info("Processing soil health card analysis: ImageSize={} bytes, Language={}",
                     healthCardImage.getSize(), language);
 
-            // Extract soil data from health card using Gemini vision
-            byte[] imageBytes = healthCardImage.getBytes();
-            SoilData extractedSoilData = soilHealthCardService.extractSoilDataFromHealthCard(imageBytes, language);
-
-            // Apply overrides if provided
-            if (overrideCropType != null && !overrideCropType.trim().isEmpty()) {
-                extractedSoilData.setCropType(overrideCropType.trim());
-                log.info("Overriding crop type with: {}", overrideCropType);
-            }
-
-            if (overrideAreaValue != null && overrideAreaValue > 0) {
-                extractedSoilData.setAreaValue(overrideAreaValue);
-                log.info("Overriding area value with: {}", overrideAreaValue);
-            }
-
-            if (overrideAreaUnit != null) {
-                extractedSoilData.setAreaUnit(overrideAreaUnit);
-                log.info("Overriding area unit with: {}", overrideAreaUnit);
-            }
-
-            if (overrideSeason != null) {
-                extractedSoilData.setSeason(overrideSeason);
-                log.info("Overriding season with: {}", overrideSeason);
-            }
-
-            log.info("Extracted soil data from health card: CropType={}, SoilType={}, Location={}, Area={} {}",
-                    extractedSoilData.getCropType(), extractedSoilData.getSoilType(),
-                    extractedSoilData.getLocation(), extractedSoilData.getAreaValue(),
-                    extractedSoilData.getAreaUnit());
-
-            // Generate recommendation using the extracted soil data
-            FertilizerRecommendation recommendation = soilAIService.generateFertilizerRecommendation(extractedSoilData);
-
-            return ResponseEntity.ok(recommendation);
+            // Extract soil data from health card using Gemini vision; the card stays mapped until the recommendation is done
+            SpooledUpload upload = uploadSpooler.spool(healthCardImage);
+            return soilHealthCardService.extractSoilDataFromHealthCardAsync(upload.buffer(), language)
+                    .flatMap(extractedSoilData -> {
+                        // Apply overrides if provided
+                        if (overrideCropType != null && !overrideCropType.trim().isEmpty()) {
+                            extractedSoilData.setCropType(overrideCropType.trim());
+                            log.info("Overriding crop type with: {}", overrideCropType);
+                        }
+
+                        if (overrideAreaValue != null && overrideAreaValue > 0) {
+                            extractedSoilData.setAreaValue(overrideAreaValue);
+                            log.info("Overriding area value with: {}", overrideAreaValue);
+                        }
+
+                        if (overrideAreaUnit != null) {
+                            extractedSoilData.setAreaUnit(overrideAreaUnit);
+                            log.info("Overriding area unit with: {}", overrideAreaUnit);
+                        }
+
+                        if (overrideSeason != null) {
+                            extractedSoilData.setSeason(overrideSeason);
+                            log.info("Overriding season with: {}", overrideSeason);
+                        }
+
+                        log.info("Extracted soil data from health card: CropType={}, SoilType={}, Location={}, Area={} {}",
+                                extractedSoilData.getCropType(), extractedSoilData.getSoilType(),
+                                extractedSoilData.getLocation(), extractedSoilData.getAreaValue(),
+                                extractedSoilData.getAreaUnit());
+
+                        // Generate recommendation using the extracted soil data
+                        return soilAIService.generateFertilizerRecommendationAsync(extractedSoilData);
+                    })
+                    .map(ResponseEntity::ok)
+                    .onErrorResume(IllegalArgumentException.class, e -> {
+                        log.error("Rejected soil health card image: {}", e.getMessage());
+                        return Mono.just(ResponseEntity.badRequest().body(createErrorRecommendation(e.getMessage())));
+                    })
+                    .onErrorResume(e -> {
+                        log.error("Error analyzing soil health card", e);
+                        return Mono.just(ResponseEntity.internalServerError().body(createErrorRecommendation("Internal server error occurred")));
+                    })
+                    .doFinally(signal -> upload.close());
 
         } catch (IllegalArgumentException e) {
             log.error("Validation error for health card analysis: {}", e.getMessage());
-            return ResponseEntity.badRequest().body(createErrorRecommendation(e.getMessage()));
+            return Mono.just(ResponseEntity.badRequest().body(createErrorRecommendation(e.getMessage())));
         } catch (IOException e) {
             log.error("Error processing health card image", e);
-            return ResponseEntity.badRequest().body(createErrorRecommendation("Error processing health card image"));
+            return Mono.just(ResponseEntity.badRequest().body(createErrorRecommendation("Error processing health card image")));
         } catch (Exception e) {
             log.error("Error analyzing soil health card", e);
-            return ResponseEntity.internalServerError().body(createErrorRecommendation("Internal server error occurred"));
+            return Mono.just(ResponseEntity.internalServerError().body(createErrorRecommendation("Internal server error occurred")));
         }
     }
 
     @PostMapping("/analyze-json")
-    public ResponseEntity<FertilizerRecommendation> analyzeSoilFromJson(
+    public Mono<ResponseEntity<FertilizerRecommendation>> analyzeSoilFromJson(
             @RequestBody SoilData soilData) {
         try {
             // Validate required fields
@@ -190,16 +218,23 @@ public class FertilizerController {
                     soilData.getCropType(), soilData.getSoilTypeSource(), soilData.getSoilImage() != null);
 
             // Generate recommendation using AI
-            FertilizerRecommendation recommendation = soilAIService.generateFertilizerRecommendation(soilData);
-
-            return ResponseEntity.ok(recommendation);
+            return soilAIService.generateFertilizerRecommendationAsync(soilData)
+                    .map(ResponseEntity::ok)
+                    .onErrorResume(IllegalArgumentException.class, e -> {
+                        log.error("Rejected soil image: {}", e.getMessage());
+                        return Mono.just(ResponseEntity.badRequest().body(null));
+                    })
+                    .onErrorResume(e -> {
+                        log.error("Error generating fertilizer recommendation from JSON", e);
+                        return Mono.just(ResponseEntity.internalServerError().body(null));
+                    });
 
         } catch (IllegalArgumentException e) {
             log.error("Validation error: {}", e.getMessage());
-            return ResponseEntity.badRequest().body(null);
+            return Mono.just(ResponseEntity.badRequest().body(null));
         } catch (Exception e) {
             log.error("Error generating fertilizer recommendation from JSON", e);
-            return ResponseEntity.internalServerError().body(null);
+            return Mono.just(ResponseEntity.internalServerError().body(null));
         }
     }
 
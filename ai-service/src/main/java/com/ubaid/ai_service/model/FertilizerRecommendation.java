@@ -10,7 +10,7 @@ import java.util.List;
 //@Table(name = "fertilizer_recommendations")
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -18,6 +18,7 @@ import java.util.List;
 public class FertilizerRecommendation {
 
     // Removed userId and soilDataId
+    private String requestId; // Producer-assigned ID; only set on copies published to Kafka (cached instances are shared)
     private String detectedSoilType; // AI-detected soil type from image
     private String cropType;
     private Double areaValue;
@@ -0,0 +1,16 @@
+package com.ubaid.ai_service.model;
+
+import lombok.*;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class GeminiResult {
+
+    private String rawResponse; // Full generateContent JSON envelope as returned by Gemini
+    private boolean withImage; // Whether the request carried inline image data
+    private long latencyMs; // Wall-clock time of the upstream call
+}
@@ -1,8 +1,10 @@
 package com.ubaid.ai_service.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 //import jakarta.persistence.*;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 
 import lombok.Data;
@@ -18,6 +20,9 @@ public class SoilData {
 
     private String soilType; // Optional: User can provide soil type (clay, sandy, loamy, etc.)
     private byte[] soilImage; // Optional: Store image as byte array for soil type detection
+    private String soilImageRef; // Optional: claim-check reference (SHA-256) to the image in the blob store
+    @JsonIgnore
+    private transient ByteBuffer soilImageBuffer; // Optional: spooled HTTP upload (memory-mapped), never serialized
     private Double areaValue; // numeric value
     private AreaUnit areaUnit; // acre, bigha, hectare
     private String cropType; // wheat, rice, corn, etc.
@@ -46,7 +51,8 @@ public class SoilData {
     // Helper method to get soil type source
     public String getSoilTypeSource() {
         boolean hasSoilType = soilType != null && !soilType.trim().isEmpty();
-        boolean hasImage = soilImage != null && soilImage.length > 0;
+        boolean hasImage = (soilImage != null && soilImage.length > 0) || soilImageRef != null
+                || (soilImageBuffer != null && soilImageBuffer.hasRemaining());
 
         if (hasSoilType && hasImage) {
             return "PROVIDED_AND_IMAGE";
@@ -61,6 +67,7 @@ public class SoilData {
     // Helper method to check if we have any soil data
     public boolean hasSoilData() {
         return (soilType != null && !soilType.trim().isEmpty()) ||
-                (soilImage != null && soilImage.length > 0);
+                (soilImage != null && soilImage.length > 0) ||
+                (soilImageBuffer != null && soilImageBuffer.hasRemaining());
     }
 }
\ No newline at end of file
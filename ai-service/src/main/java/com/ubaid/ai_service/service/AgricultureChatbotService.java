@@ -1,11 +1,13 @@
 package com.ubaid.ai_service.service;
 
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ubaid.ai_service.model.GeminiResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -14,7 +16,7 @@ import java.util.List;
 public class AgricultureChatbotService {
 
     private final GeminiService geminiService;
-    private final ObjectMapper objectMapper;
+    private final GeminiResponseExtractor responseExtractor;
 
     // Comprehensive agriculture keywords
     private final List<String> agricultureKeywords = Arrays.asList(
@@ -49,58 +51,94 @@ public class AgricultureChatbotService {
             "agronomy", "horticulture", "livestock", "cattle", "dairy", "poultry"
     );
 
-    public AgricultureChatbotService(GeminiService geminiService) {
+    public AgricultureChatbotService(GeminiService geminiService, GeminiResponseExtractor responseExtractor) {
         this.geminiService = geminiService;
-        this.objectMapper = new ObjectMapper();
+        this.responseExtractor = responseExtractor;
     }
 
     // Updated method with language support
     public ChatbotResponse processChat(String message, byte[] image, String sessionId, String language) {
-        try {
-            // Double-check agriculture relevance
-            if (!isAgricultureRelated(message)) {
-                String errorMessage = getLocalizedErrorMessage(language);
-                return new ChatbotResponse(
-                        errorMessage,
-                        false,
-                        "NON_AGRICULTURE_TOPIC",
-                        sessionId
-                );
-            }
+        return processChatAsync(message, image, sessionId, language).block();
+    }
 
-            String prompt = createAgriculturePrompt(message, language);
-            String geminiResponse;
-
-            // Use appropriate Gemini method
-            if (image != null && image.length > 0) {
-                geminiResponse = geminiService.getAnswerWithImage(prompt, image);
-                log.info("Processed chat with image - SessionId: {}, Language: {}, MessageLength: {}",
-                        sessionId, language, message.length());
-            } else {
-                geminiResponse = geminiService.getAnswer(prompt);
-                log.info("Processed text-only chat - SessionId: {}, Language: {}, MessageLength: {}",
-                        sessionId, language, message.length());
-            }
+    public Mono<ChatbotResponse> processChatAsync(String message, byte[] image, String sessionId, String language) {
+        return processChatAsync(message, image != null ? ByteBuffer.wrap(image) : null, sessionId, language);
+    }
 
-            String responseText = extractResponseText(geminiResponse);
+    /**
+     * @param image optional; typically the memory-mapped view of a spooled upload
+     */
+    public Mono<ChatbotResponse> processChatAsync(String message, ByteBuffer image, String sessionId, String language) {
+        return Mono.defer(() -> {
+                    // Double-check agriculture relevance
+                    if (!isAgricultureRelated(message)) {
+                        String errorMessage = getLocalizedErrorMessage(language);
+                        return Mono.just(new ChatbotResponse(
+                                errorMessage,
+                                false,
+                                "NON_AGRICULTURE_TOPIC",
+                                sessionId
+                        ));
+                    }
+
+                    String prompt = createAgriculturePrompt(message, language);
+                    Mono<GeminiResult> geminiResponse;
+
+                    // Use appropriate Gemini method
+                    if (image != null && image.hasRemaining()) {
+                        geminiResponse = geminiService.getAnswerWithImageAsync(prompt, image)
+                                .doOnSuccess(result -> log.info("Processed chat with image - SessionId: {}, Language: {}, MessageLength: {}",
+                                        sessionId, language, message.length()));
+                    } else {
+                        geminiResponse = geminiService.getAnswerAsync(prompt)
+                                .doOnSuccess(result -> log.info("Processed text-only chat - SessionId: {}, Language: {}, MessageLength: {}",
+                                        sessionId, language, message.length()));
+                    }
+
+                    return geminiResponse.map(result -> new ChatbotResponse(
+                            extractResponseText(result.getRawResponse()),
+                            true,
+                            image != null ? "TEXT_WITH_IMAGE" : "TEXT_ONLY",
+                            sessionId
+                    ));
+                })
+                .onErrorResume(e -> {
+                    log.error("Error processing chat - SessionId: {}, Language: {}, Error: {}", sessionId, language, e.getMessage());
+                    String errorMessage = getLocalizedTechnicalError(language);
+                    return Mono.just(new ChatbotResponse(
+                            errorMessage,
+                            false,
+                            "TECHNICAL_ERROR",
+                            sessionId
+                    ));
+                });
+    }
 
-            return new ChatbotResponse(
-                    responseText,
-                    true,
-                    image != null ? "TEXT_WITH_IMAGE" : "TEXT_ONLY",
-                    sessionId
-            );
+    /**
+     * Streaming variant of {@link #processChatAsync}: same relevance check, language handling and prompt,
+     * but answer fragments are emitted as Gemini produces them. Topic and upstream errors surface as
+     * {@link ChatbotStreamException} carrying the localized message.
+     */
+    public Flux<String> streamChat(String message, byte[] image, String sessionId, String language) {
+        return streamChat(message, image != null ? ByteBuffer.wrap(image) : null, sessionId, language);
+    }
 
-        } catch (Exception e) {
-            log.error("Error processing chat - SessionId: {}, Language: {}, Error: {}", sessionId, language, e.getMessage());
-            String errorMessage = getLocalizedTechnicalError(language);
-            return new ChatbotResponse(
-                    errorMessage,
-                    false,
-                    "TECHNICAL_ERROR",
-                    sessionId
-            );
-        }
+    public Flux<String> streamChat(String message, ByteBuffer image, String sessionId, String language) {
+        return Flux.defer(() -> {
+                    if (!isAgricultureRelated(message)) {
+                        return Flux.error(new ChatbotStreamException(getLocalizedErrorMessage(language), "NON_AGRICULTURE_TOPIC"));
+                    }
+
+                    String prompt = createAgriculturePrompt(message, language);
+                    log.info("Streaming chat - SessionId: {}, Language: {}, HasImage: {}, MessageLength: {}",
+                            sessionId, language, image != null && image.hasRemaining(), message.length());
+
+                    return geminiService.streamAnswer(prompt, image)
+                            .onErrorMap(e -> !(e instanceof ChatbotStreamException), e -> {
+                                log.error("Error streaming chat - SessionId: {}, Language: {}, Error: {}", sessionId, language, e.getMessage());
+                                return new ChatbotStreamException(getLocalizedTechnicalError(language), "TECHNICAL_ERROR");
+                            });
+                });
     }
 
     // Legacy method for backward compatibility
@@ -245,20 +283,12 @@ public class AgricultureChatbotService {
 
     private String extractResponseText(String geminiResponse) {
         try {
-            JsonNode rootNode = objectMapper.readTree(geminiResponse);
-
-            JsonNode candidatesNode = rootNode.path("candidates");
-            if (candidatesNode.isEmpty() || !candidatesNode.isArray()) {
+            String responseText = responseExtractor.extractText(geminiResponse);
+            if (responseText == null) {
                 return "I couldn't process your agricultural question properly. Please try rephrasing it with more specific farming details.";
             }
 
-            JsonNode textNode = candidatesNode.get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text");
-
-            String responseText = textNode.asText().trim();
+            responseText = responseText.trim();
 
             if (responseText.isEmpty()) {
                 return "Please provide more specific details about your agricultural query for better assistance.";
@@ -294,6 +324,17 @@ public class AgricultureChatbotService {
         return response;
     }
 
+    public static class ChatbotStreamException extends RuntimeException {
+        private final String responseType;
+
+        public ChatbotStreamException(String message, String responseType) {
+            super(message);
+            this.responseType = responseType;
+        }
+
+        public String getResponseType() { return responseType; }
+    }
+
     // Response DTO
     public static class ChatbotResponse {
         private String message;
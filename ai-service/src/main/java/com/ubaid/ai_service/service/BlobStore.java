@@ -0,0 +1,12 @@
+package com.ubaid.ai_service.service;
+
+import java.io.IOException;
+
+/**
+ * Read side of the claim-check store shared with the producer. Blobs are addressed by the lowercase hex
+ * SHA-256 of their content.
+ */
+public interface BlobStore {
+
+    byte[] get(String ref) throws IOException;
+}
@@ -0,0 +1,38 @@
+package com.ubaid.ai_service.service;
+
+import com.ubaid.ai_service.util.HashUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+@Component
+@Slf4j
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Pattern REF_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+
+    public FileSystemBlobStore(@Value("${blob-store.directory}") String directory) {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public byte[] get(String ref) throws IOException {
+        if (ref == null || !REF_PATTERN.matcher(ref).matches()) {
+            throw new IllegalArgumentException("Invalid blob reference: " + ref);
+        }
+        // Same two-character fan-out the producer writes with
+        byte[] content = Files.readAllBytes(root.resolve(ref.substring(0, 2)).resolve(ref));
+        if (!ref.equals(HashUtils.sha256Hex(content))) {
+            throw new IOException("Blob content does not match reference " + ref);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,12 @@
+package com.ubaid.ai_service.service;
+
+/**
+ * Raised when the client-side Gemini limiter sheds a request instead of letting it pile onto an
+ * already saturated upstream.
+ */
+public class GeminiOverloadedException extends RuntimeException {
+
+    public GeminiOverloadedException(String message) {
+        super(message);
+    }
+}
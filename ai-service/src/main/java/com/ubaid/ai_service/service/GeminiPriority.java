@@ -0,0 +1,22 @@
+package com.ubaid.ai_service.service;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Scheduling lane for Gemini calls. Callers tag a pipeline with {@link #context(GeminiPriority)} via
+ * {@code contextWrite}; untagged calls (HTTP requests) count as interactive.
+ */
+public enum GeminiPriority {
+    INTERACTIVE, BULK;
+
+    private static final String CONTEXT_KEY = GeminiPriority.class.getName();
+
+    public static Context context(GeminiPriority priority) {
+        return Context.of(CONTEXT_KEY, priority);
+    }
+
+    static GeminiPriority from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, INTERACTIVE);
+    }
+}
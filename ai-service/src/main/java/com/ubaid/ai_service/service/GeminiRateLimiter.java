@@ -0,0 +1,387 @@
+package com.ubaid.ai_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Client-side limiter for upstream Gemini calls, combining two gates:
+ * <ul>
+ *     <li>a token bucket that keeps us inside the project quota (steady rate + burst), and</li>
+ *     <li>an AIMD concurrency limit: +1/limit per successful call, multiplicative decrease on
+ *     429/503/timeouts or when latency exceeds the target.</li>
+ * </ul>
+ * Calls that cannot start immediately wait in a bounded queue with a deadline; overflow and expired
+ * waiters fail fast with {@link GeminiOverloadedException}. The queue has one FIFO lane per
+ * {@link GeminiPriority}; freed permits go to interactive waiters {@code interactive-weight} times for every
+ * bulk waiter, so bulk traffic cannot starve interactive callers but still makes progress.
+ */
+@Component
+@Slf4j
+public class GeminiRateLimiter {
+
+    private enum Outcome { SUCCESS, SLOW, OVERLOAD, IGNORE }
+
+    private final boolean enabled;
+    private final double ratePerSecond;
+    private final double burst;
+    private final double minLimit;
+    private final double maxLimit;
+    private final double backoffRatio;
+    private final long latencyTargetNanos;
+    private final int queueCapacity;
+    private final Duration queueTimeout;
+
+    private final LaneQueue queue;
+    private double tokens;
+    private long lastRefillNanos;
+    private double limit;
+    private int inFlight;
+    private Disposable scheduledDrain;
+
+    private final Counter queueFullRejections;
+    private final Counter deadlineRejections;
+    private final Timer queueWait;
+
+    public GeminiRateLimiter(MeterRegistry meterRegistry,
+                             @Value("${gemini.limiter.enabled:true}") boolean enabled,
+                             @Value("${gemini.limiter.rate-per-second:10}") double ratePerSecond,
+                             @Value("${gemini.limiter.burst:20}") double burst,
+                             @Value("${gemini.limiter.initial-limit:20}") double initialLimit,
+                             @Value("${gemini.limiter.min-limit:2}") double minLimit,
+                             @Value("${gemini.limiter.max-limit:200}") double maxLimit,
+                             @Value("${gemini.limiter.backoff-ratio:0.7}") double backoffRatio,
+                             @Value("${gemini.limiter.latency-target:15s}") Duration latencyTarget,
+                             @Value("${gemini.limiter.queue-capacity:500}") int queueCapacity,
+                             @Value("${gemini.limiter.queue-timeout:20s}") Duration queueTimeout,
+                             @Value("${gemini.limiter.interactive-weight:4}") int interactiveWeight) {
+        this.enabled = enabled;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.queueCapacity = queueCapacity;
+        this.queueTimeout = queueTimeout;
+        this.queue = new LaneQueue(interactiveWeight);
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.limit = initialLimit;
+
+        Gauge.builder("gemini.limiter.queue.depth", this, limiter -> limiter.snapshot(() -> limiter.queue.size()))
+                .register(meterRegistry);
+        for (GeminiPriority lane : GeminiPriority.values()) {
+            Gauge.builder("gemini.limiter.lane.queue.depth", this, limiter -> limiter.snapshot(() -> limiter.queue.size(lane)))
+                    .tag("lane", lane.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("gemini.limiter.in_flight", this, limiter -> limiter.snapshot(() -> limiter.inFlight))
+                .register(meterRegistry);
+        Gauge.builder("gemini.limiter.concurrency.limit", this, limiter -> limiter.snapshot(() -> limiter.limit))
+                .register(meterRegistry);
+        this.queueFullRejections = Counter.builder("gemini.limiter.rejections")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.deadlineRejections = Counter.builder("gemini.limiter.rejections")
+                .tag("reason", "deadline")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("gemini.limiter.queue.wait")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        if (!enabled) {
+            return Mono.defer(call);
+        }
+        return Mono.usingWhen(acquire(),
+                permit -> Mono.defer(call),
+                permit -> permit.release(null),
+                (permit, error) -> permit.release(error),
+                permit -> permit.cancel());
+    }
+
+    /**
+     * Streaming calls hold a permit until the stream terminates; their duration reflects generation
+     * length rather than upstream health, so only errors feed the concurrency limit.
+     */
+    public <T> Flux<T> executeMany(Supplier<Flux<T>> call) {
+        if (!enabled) {
+            return Flux.defer(call);
+        }
+        return Flux.usingWhen(acquire(),
+                permit -> Flux.defer(call),
+                permit -> permit.cancel(),
+                (permit, error) -> permit.release(error),
+                permit -> permit.cancel());
+    }
+
+    /**
+     * True while calls are queuing for a permit, i.e. the concurrency limit or the token bucket is exhausted.
+     * Used by callers that can defer work (e.g. Kafka polling) to stop feeding the queue.
+     */
+    public synchronized boolean isSaturated() {
+        return enabled && !queue.isEmpty();
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.deferContextual(context -> acquire(GeminiPriority.from(context)));
+    }
+
+    private Mono<Permit> acquire(GeminiPriority lane) {
+        return Mono.create(sink -> {
+            Permit granted;
+            Waiter waiter = null;
+            synchronized (this) {
+                granted = queue.isEmpty() ? tryGrant() : null;
+                if (granted == null) {
+                    if (queue.size() >= queueCapacity) {
+                        queueFullRejections.increment();
+                        sink.error(new GeminiOverloadedException("Gemini limiter queue is full (" + queueCapacity + ")"));
+                        return;
+                    }
+                    waiter = new Waiter(sink, lane, System.nanoTime());
+                    queue.addLast(waiter);
+                    scheduleTokenDrainIfNeeded();
+                }
+            }
+
+            if (granted != null) {
+                queueWait.record(0, TimeUnit.NANOSECONDS);
+                sink.success(granted);
+                return;
+            }
+
+            Waiter queued = waiter;
+            Disposable deadline = Schedulers.parallel().schedule(() -> expire(queued),
+                    queueTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            sink.onDispose(deadline::dispose);
+            sink.onCancel(() -> {
+                boolean removed;
+                synchronized (this) {
+                    removed = queue.remove(queued);
+                }
+                // Cancelled after drain() granted the permit but before the caller saw it
+                if (!removed && queued.granted != null) {
+                    queued.granted.releaseOnce(Outcome.IGNORE);
+                }
+            });
+        });
+    }
+
+    private void expire(Waiter waiter) {
+        boolean removed;
+        synchronized (this) {
+            removed = queue.remove(waiter);
+        }
+        if (removed) {
+            deadlineRejections.increment();
+            waiter.sink.error(new GeminiOverloadedException("Timed out after " + queueTimeout + " waiting for Gemini capacity"));
+        }
+    }
+
+    private void drain() {
+        List<Waiter> ready = new ArrayList<>();
+        List<Permit> permits = new ArrayList<>();
+        synchronized (this) {
+            while (!queue.isEmpty()) {
+                Permit permit = tryGrant();
+                if (permit == null) {
+                    break;
+                }
+                Waiter waiter = queue.pollFirst();
+                waiter.granted = permit;
+                ready.add(waiter);
+                permits.add(permit);
+            }
+            scheduleTokenDrainIfNeeded();
+        }
+
+        long now = System.nanoTime();
+        for (int i = 0; i < ready.size(); i++) {
+            queueWait.record(now - ready.get(i).enqueuedNanos, TimeUnit.NANOSECONDS);
+            ready.get(i).sink.success(permits.get(i));
+        }
+    }
+
+    // Must hold the monitor
+    private Permit tryGrant() {
+        refill();
+        if (inFlight >= Math.floor(limit) || tokens < 1.0) {
+            return null;
+        }
+        tokens -= 1.0;
+        inFlight++;
+        return new Permit(System.nanoTime());
+    }
+
+    // Must hold the monitor
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * ratePerSecond);
+        lastRefillNanos = now;
+    }
+
+    // Must hold the monitor. Releases wake the queue on their own; only a token shortage needs a timer.
+    private void scheduleTokenDrainIfNeeded() {
+        if (queue.isEmpty() || tokens >= 1.0 || inFlight >= Math.floor(limit)
+                || (scheduledDrain != null && !scheduledDrain.isDisposed())) {
+            return;
+        }
+        long delayMillis = Math.max(1, (long) Math.ceil((1.0 - tokens) / ratePerSecond * 1000));
+        scheduledDrain = Schedulers.parallel().schedule(() -> {
+            synchronized (this) {
+                scheduledDrain = null;
+            }
+            drain();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void onRelease(Outcome outcome) {
+        synchronized (this) {
+            inFlight--;
+            double previous = limit;
+            switch (outcome) {
+                case SUCCESS -> limit = Math.min(maxLimit, limit + 1.0 / limit);
+                case SLOW -> limit = Math.max(minLimit, limit * 0.9);
+                case OVERLOAD -> limit = Math.max(minLimit, limit * backoffRatio);
+                case IGNORE -> { }
+            }
+            if (outcome == Outcome.OVERLOAD && previous != limit) {
+                log.warn("Gemini overload signal, concurrency limit {} -> {}", Math.floor(previous), Math.floor(limit));
+            }
+        }
+        drain();
+    }
+
+    private Outcome classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof TimeoutException) {
+                return Outcome.OVERLOAD;
+            }
+            if (t instanceof WebClientResponseException responseException) {
+                int status = responseException.getStatusCode().value();
+                return status == 429 || status == 503 ? Outcome.OVERLOAD : Outcome.IGNORE;
+            }
+        }
+        return Outcome.IGNORE;
+    }
+
+    private synchronized double snapshot(Supplier<Number> value) {
+        return value.get().doubleValue();
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Permit> sink;
+        private final GeminiPriority lane;
+        private final long enqueuedNanos;
+        private volatile Permit granted;
+
+        private Waiter(MonoSink<Permit> sink, GeminiPriority lane, long enqueuedNanos) {
+            this.sink = sink;
+            this.lane = lane;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    // Not thread-safe; always accessed under the limiter's monitor
+    private static final class LaneQueue {
+        private final Deque<Waiter> interactive = new ArrayDeque<>();
+        private final Deque<Waiter> bulk = new ArrayDeque<>();
+        private final int interactiveWeight;
+        private int interactiveStreak;
+
+        private LaneQueue(int interactiveWeight) {
+            this.interactiveWeight = Math.max(1, interactiveWeight);
+        }
+
+        boolean isEmpty() {
+            return interactive.isEmpty() && bulk.isEmpty();
+        }
+
+        int size() {
+            return interactive.size() + bulk.size();
+        }
+
+        int size(GeminiPriority lane) {
+            return laneOf(lane).size();
+        }
+
+        void addLast(Waiter waiter) {
+            laneOf(waiter.lane).addLast(waiter);
+        }
+
+        boolean remove(Waiter waiter) {
+            return laneOf(waiter.lane).remove(waiter);
+        }
+
+        Waiter pollFirst() {
+            boolean bulkTurn = interactive.isEmpty() || (!bulk.isEmpty() && interactiveStreak >= interactiveWeight);
+            if (bulkTurn) {
+                interactiveStreak = 0;
+                return bulk.pollFirst();
+            }
+            interactiveStreak++;
+            return interactive.pollFirst();
+        }
+
+        private Deque<Waiter> laneOf(GeminiPriority lane) {
+            return lane == GeminiPriority.BULK ? bulk : interactive;
+        }
+    }
+
+    private final class Permit {
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        Mono<Void> release(Throwable error) {
+            return Mono.fromRunnable(() -> {
+                Outcome outcome;
+                if (error != null) {
+                    outcome = classify(error);
+                } else {
+                    outcome = System.nanoTime() - startNanos > latencyTargetNanos ? Outcome.SLOW : Outcome.SUCCESS;
+                }
+                releaseOnce(outcome);
+            });
+        }
+
+        Mono<Void> cancel() {
+            return Mono.fromRunnable(() -> releaseOnce(Outcome.IGNORE));
+        }
+
+        private void releaseOnce(Outcome outcome) {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            onRelease(outcome);
+        }
+    }
+}
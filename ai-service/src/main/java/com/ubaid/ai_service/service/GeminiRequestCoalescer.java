@@ -0,0 +1,74 @@
+package com.ubaid.ai_service.service;
+
+import com.ubaid.ai_service.model.GeminiResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for Gemini calls: concurrent callers with the same request key and {@link GeminiPriority} lane
+ * share one upstream call and all receive its result. The entry is dropped as soon as the call terminates, so this never
+ * serves stale answers - caching is {@link RecommendationCache}'s job.
+ */
+@Component
+@Slf4j
+public class GeminiRequestCoalescer {
+
+    private final Map<String, Mono<GeminiResult>> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Counter leaders;
+    private final Counter followers;
+
+    public GeminiRequestCoalescer(MeterRegistry meterRegistry,
+                                  @Value("${gemini.coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.leaders = Counter.builder("gemini.coalescing.requests")
+                .tag("role", "leader")
+                .description("Requests that triggered an upstream Gemini call")
+                .register(meterRegistry);
+        this.followers = Counter.builder("gemini.coalescing.requests")
+                .tag("role", "follower")
+                .description("Requests served by joining an identical in-flight call")
+                .register(meterRegistry);
+        meterRegistry.gauge("gemini.coalescing.in_flight", inFlight, Map::size);
+    }
+
+    public Mono<GeminiResult> execute(String key, Supplier<Mono<GeminiResult>> upstream) {
+        if (!enabled) {
+            return Mono.defer(upstream);
+        }
+
+        return Mono.deferContextual(context -> {
+            // Keyed per lane: the shared call runs with the leader's priority, so an interactive caller joining a
+            // bulk leader would otherwise wait in the bulk queue
+            String laneKey = key + ":" + GeminiPriority.from(context);
+            boolean[] leader = {false};
+            Mono<GeminiResult> shared = inFlight.computeIfAbsent(laneKey, k -> {
+                leader[0] = true;
+                AtomicReference<Mono<GeminiResult>> self = new AtomicReference<>();
+                // share() cancels the upstream only once every joined caller has cancelled
+                Mono<GeminiResult> call = Mono.defer(upstream)
+                        .doFinally(signal -> inFlight.remove(k, self.get()))
+                        .share();
+                self.set(call);
+                return call;
+            });
+
+            if (leader[0]) {
+                leaders.increment();
+            } else {
+                followers.increment();
+                log.debug("Joined in-flight Gemini request {}", laneKey);
+            }
+            return shared;
+        });
+    }
+}
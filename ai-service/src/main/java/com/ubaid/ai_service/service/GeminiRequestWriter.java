@@ -0,0 +1,118 @@
+package com.ubaid.ai_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Writes generateContent request bodies straight into the HTTP client's (pooled Netty) buffers.
+ * The JSON envelope is emitted around the image and the image bytes are base64-encoded chunk by chunk
+ * into each outgoing buffer, so no base64 String, JSON char[] or full-body buffer is ever materialized.
+ */
+@Component
+public class GeminiRequestWriter {
+
+    // Multiple of 3 so every chunk encodes to whole base64 quads and only the last one carries padding
+    private static final int RAW_CHUNK_SIZE = 48 * 1024;
+
+    private final ObjectMapper objectMapper;
+
+    public GeminiRequestWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public BodyInserter<ByteBuffer, ClientHttpRequest> write(String prompt, ByteBuffer image, String mimeType) {
+        return write(prompt, image, mimeType, null);
+    }
+
+    /**
+     * @param image            optional image payload; read from its current position to its limit without being
+     *                         consumed, so the same buffer can be written again on retry
+     * @param generationConfig optional {@code generationConfig} object (e.g. responseMimeType/responseSchema)
+     */
+    public BodyInserter<ByteBuffer, ClientHttpRequest> write(String prompt, ByteBuffer image, String mimeType,
+                                                            Map<String, Object> generationConfig) {
+        byte[] prefix;
+        byte[] suffix;
+        try {
+            StringBuilder head = new StringBuilder("{\"contents\":[{\"parts\":[{\"text\":")
+                    .append(objectMapper.writeValueAsString(prompt))
+                    .append('}');
+            if (image != null) {
+                head.append(",{\"inline_data\":{\"mime_type\":")
+                        .append(objectMapper.writeValueAsString(mimeType))
+                        .append(",\"data\":\"");
+            }
+            prefix = head.toString().getBytes(StandardCharsets.UTF_8);
+            StringBuilder tail = new StringBuilder(image != null ? "\"}}" : "").append("]}]");
+            if (generationConfig != null) {
+                tail.append(",\"generationConfig\":").append(objectMapper.writeValueAsString(generationConfig));
+            }
+            suffix = tail.append('}').toString().getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Prompt or generation config cannot be serialized", e);
+        }
+
+        ByteBuffer source = image != null ? image.duplicate() : null;
+        long imageLength = source != null ? source.remaining() : 0;
+        long base64Length = 4 * ((imageLength + 2) / 3);
+
+        return (message, context) -> {
+            DataBufferFactory bufferFactory = message.bufferFactory();
+            message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            message.getHeaders().setContentLength(prefix.length + base64Length + suffix.length);
+
+            Flux<DataBuffer> body = Flux.concat(
+                    Mono.fromSupplier(() -> bufferFactory.wrap(prefix)),
+                    source != null ? base64Chunks(source.duplicate(), bufferFactory) : Flux.empty(),
+                    Mono.fromSupplier(() -> bufferFactory.wrap(suffix)));
+            return message.writeWith(body);
+        };
+    }
+
+    private Flux<DataBuffer> base64Chunks(ByteBuffer source, DataBufferFactory bufferFactory) {
+        // Buffers are produced on demand, so at most one chunk is held beyond what the socket has accepted
+        return Flux.generate(() -> new byte[source.hasArray() ? 0 : Math.min(RAW_CHUNK_SIZE, source.remaining())],
+                (scratch, sink) -> {
+                    int length = Math.min(RAW_CHUNK_SIZE, source.remaining());
+                    if (length == 0) {
+                        sink.complete();
+                        return scratch;
+                    }
+                    byte[] chunk = scratch;
+                    int offset = 0;
+                    if (source.hasArray()) {
+                        // Heap-backed images are encoded in place; only mapped/direct buffers go through scratch
+                        chunk = source.array();
+                        offset = source.arrayOffset() + source.position();
+                        source.position(source.position() + length);
+                    } else {
+                        source.get(scratch, 0, length);
+                    }
+
+                    DataBuffer buffer = bufferFactory.allocateBuffer(4 * ((length + 2) / 3));
+                    try (OutputStream encoder = Base64.getEncoder().wrap(buffer.asOutputStream())) {
+                        encoder.write(chunk, offset, length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    sink.next(buffer);
+                    return scratch;
+                });
+    }
+}
@@ -0,0 +1,80 @@
+package com.ubaid.ai_service.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Shared reader for Gemini generateContent envelopes. The answer text is pulled out of
+ * {@code candidates[0].content.parts[0].text} with a streaming parser that stops as soon as it gets
+ * there (no JsonNode tree, usage metadata is never read), and embedded JSON answers are bound straight
+ * onto model classes.
+ */
+@Component
+public class GeminiResponseExtractor {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper bindingMapper;
+
+    public GeminiResponseExtractor(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        // Model answers are loosely typed: extra keys, enum casing and raw newlines inside strings are all tolerated
+        this.bindingMapper = objectMapper.copy();
+        this.bindingMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .configure(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL, true)
+                .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS, true)
+                .configure(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS.mappedFeature(), true);
+    }
+
+    /**
+     * @return the first candidate's first text part, or {@code null} when the envelope has none
+     */
+    public String extractText(String rawResponse) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(rawResponse)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT
+                    || !seekField(parser, "candidates") || parser.nextToken() != JsonToken.START_ARRAY
+                    || parser.nextToken() != JsonToken.START_OBJECT
+                    || !seekField(parser, "content") || parser.nextToken() != JsonToken.START_OBJECT
+                    || !seekField(parser, "parts") || parser.nextToken() != JsonToken.START_ARRAY
+                    || parser.nextToken() != JsonToken.START_OBJECT
+                    || !seekField(parser, "text")) {
+                return null;
+            }
+            return parser.nextToken() == JsonToken.VALUE_STRING ? parser.getText() : null;
+        }
+    }
+
+    /**
+     * Binds the JSON object embedded in a model answer. Markdown fences or prose around the object are
+     * skipped by locating the outermost braces instead of rewriting the text.
+     */
+    public <T> T bindJson(String answerText, Class<T> type) throws IOException {
+        int start = answerText.indexOf('{');
+        int end = answerText.lastIndexOf('}');
+        if (start == -1 || end <= start) {
+            throw new IOException("No JSON object found in AI answer");
+        }
+        String json = start == 0 && end == answerText.length() - 1
+                ? answerText
+                : answerText.substring(start, end + 1);
+        return bindingMapper.readValue(json, type);
+    }
+
+    // Parser must be positioned inside an object; leaves it on the matching FIELD_NAME
+    private boolean seekField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.currentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+}
@@ -1,20 +1,40 @@
 package com.ubaid.ai_service.service;
 
+import com.ubaid.ai_service.model.GeminiResult;
+import com.ubaid.ai_service.util.HashUtils;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.util.Base64;
 import java.util.Map;
 
 @Service
 @Slf4j
 public class GeminiService {
 
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
     private final WebClient webClient;
+    private final GeminiResponseExtractor responseExtractor;
+    private final GeminiRequestCoalescer requestCoalescer;
+    private final GeminiRateLimiter rateLimiter;
+    private final GeminiRequestWriter requestWriter;
+    private final ImageNormalizer imageNormalizer;
+    private final ObservationRegistry observationRegistry;
 
     @Value("${gemini.api.key}")
     private String geminiApiKey;
@@ -22,91 +42,201 @@ public class GeminiService {
     @Value("${gemini.api.url}")
     private String geminiApiUrl;
 
-    public GeminiService(WebClient.Builder webClientBuilder) {
+    @Value("${gemini.api.stream-url}")
+    private String geminiStreamApiUrl;
+
+    public GeminiService(WebClient.Builder webClientBuilder, GeminiResponseExtractor responseExtractor,
+                         GeminiRequestCoalescer requestCoalescer, GeminiRateLimiter rateLimiter,
+                         GeminiRequestWriter requestWriter, ImageNormalizer imageNormalizer,
+                         ObservationRegistry observationRegistry) {
         this.webClient = webClientBuilder
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024))
                 .build();
+        this.responseExtractor = responseExtractor;
+        this.requestCoalescer = requestCoalescer;
+        this.rateLimiter = rateLimiter;
+        this.requestWriter = requestWriter;
+        this.imageNormalizer = imageNormalizer;
+        this.observationRegistry = observationRegistry;
     }
 
     public String getAnswer(String question) {
-        try {
-            Map<String, Object> requestBody = Map.of(
-                    "contents", new Object[] {
-                            Map.of("parts", new Object[]{
-                                    Map.of("text", question)
-                            })
-                    }
-            );
-
-            String fullUrl = String.format("%s?key=%s", geminiApiUrl, geminiApiKey);
-
-            log.info("Sending request to Gemini API");
-
-            String response = webClient.post()
-                    .uri(fullUrl)
-                    .header("Content-Type", "application/json")
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(30))
-                    .block();
+        return getAnswerAsync(question)
+                .map(GeminiResult::getRawResponse)
+                .block();
+    }
+
+    public String getAnswerWithImage(String question, byte[] imageBytes) {
+        return getAnswerWithImageAsync(question, imageBytes)
+                .map(GeminiResult::getRawResponse)
+                .block();
+    }
+
+    public Mono<GeminiResult> getAnswerAsync(String question) {
+        return getAnswerAsync(question, null);
+    }
+
+    public Mono<GeminiResult> getAnswerWithImageAsync(String question, byte[] imageBytes) {
+        return getAnswerWithImageAsync(question, imageBytes, null);
+    }
+
+    public Mono<GeminiResult> getAnswerWithImageAsync(String question, ByteBuffer image) {
+        return getAnswerWithImageAsync(question, image, null);
+    }
+
+    /**
+     * @param responseSchema optional Gemini responseSchema; when present the model is put in structured-output
+     *                       mode ({@code responseMimeType: application/json}) and the answer text is bare JSON
+     */
+    public Mono<GeminiResult> getAnswerAsync(String question, Map<String, Object> responseSchema) {
+        log.info("Sending request to Gemini API");
+
+        return requestCoalescer.execute(requestKey(question, null, responseSchema),
+                        () -> execute(requestWriter.write(question, null, null, generationConfig(responseSchema)),
+                                false, Duration.ofSeconds(30)))
+                .doOnSuccess(result -> log.info("Successfully received response from Gemini API in {} ms",
+                        result != null ? result.getLatencyMs() : 0))
+                .onErrorMap(e -> translateError(e, "Gemini API", "Failed to call Gemini AI"));
+    }
+
+    public Mono<GeminiResult> getAnswerWithImageAsync(String question, byte[] imageBytes,
+                                                      Map<String, Object> responseSchema) {
+        return getAnswerWithImageAsync(question, ByteBuffer.wrap(imageBytes), responseSchema);
+    }
+
+    /**
+     * @param image read from its position to its limit without being consumed; may be a memory-mapped upload,
+     *              which is hashed and base64-encoded in place
+     */
+    public Mono<GeminiResult> getAnswerWithImageAsync(String question, ByteBuffer image,
+                                                      Map<String, Object> responseSchema) {
+        // Normalized inside the coalescer so joined callers share one resize, and before the limiter so no permit is held meanwhile
+        return requestCoalescer.execute(requestKey(question, image, responseSchema), () -> imageNormalizer.normalize(image)
+                .flatMap(normalized -> executeWithImage(question, normalized, responseSchema)))
+                .doOnSuccess(result -> log.info("Successfully received response from Gemini API with image analysis in {} ms",
+                        result != null ? result.getLatencyMs() : 0))
+                .onErrorMap(e -> translateError(e, "Gemini API with image", "Failed to call Gemini AI with image"));
+    }
+
+    /**
+     * For callers that already ran the image through {@link ImageNormalizer} (e.g. to fingerprint it); the image is
+     * sent as given. Identical concurrent uploads still share one resize, since the normalizer single-flights by image hash.
+     */
+    public Mono<GeminiResult> getAnswerWithImageAsync(String question, ImageNormalizer.NormalizedImage image,
+                                                      Map<String, Object> responseSchema) {
+        return requestCoalescer.execute(requestKey(question, image.data(), responseSchema),
+                        () -> executeWithImage(question, image, responseSchema))
+                .doOnSuccess(result -> log.info("Successfully received response from Gemini API with image analysis in {} ms",
+                        result != null ? result.getLatencyMs() : 0))
+                .onErrorMap(e -> translateError(e, "Gemini API with image", "Failed to call Gemini AI with image"));
+    }
 
-            log.info("Successfully received response from Gemini API");
-            return response;
+    private Mono<GeminiResult> executeWithImage(String question, ImageNormalizer.NormalizedImage image,
+                                                Map<String, Object> responseSchema) {
+        log.info("Sending request to Gemini API with image");
 
-        } catch (WebClientResponseException e) {
-            log.error("HTTP Error calling Gemini API - Status: {}, Response: {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Gemini API Error: " + e.getStatusCode(), e);
+        // Image is base64-encoded straight into the outgoing buffers by the writer
+        return execute(requestWriter.write(question, image.data(), image.mimeType(),
+                        generationConfig(responseSchema)),
+                true, Duration.ofSeconds(45)); // Increased timeout for image processing
+    }
+
+    /**
+     * Streams the answer through Gemini's streamGenerateContent endpoint (SSE mode), emitting each
+     * text fragment as soon as it arrives. Image bytes are optional.
+     */
+    public Flux<String> streamAnswer(String question, byte[] imageBytes) {
+        return streamAnswer(question, imageBytes != null ? ByteBuffer.wrap(imageBytes) : null);
+    }
+
+    public Flux<String> streamAnswer(String question, ByteBuffer image) {
+        return Flux.defer(() -> {
+            boolean withImage = image != null && image.hasRemaining();
+
+            log.info("Opening streaming request to Gemini API, withImage={}", withImage);
+
+            Mono<ImageNormalizer.NormalizedImage> normalized = withImage
+                    ? imageNormalizer.normalize(image)
+                    : Mono.just(new ImageNormalizer.NormalizedImage(null, null, false, null));
+            return normalized.flatMapMany(normalizedImage -> rateLimiter.executeMany(() -> webClient.post()
+                    .uri(geminiStreamApiUrl + "?alt=sse&key={key}", geminiApiKey)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .body(requestWriter.write(question, normalizedImage.data(), normalizedImage.mimeType()))
+                    .retrieve()
+                    .bodyToFlux(SSE_TYPE)
+                    // Only the first chunk is bounded; later chunks may legitimately trickle in
+                    .timeout(Mono.delay(Duration.ofSeconds(withImage ? 45 : 30)), chunk -> Mono.never())))
+                    .mapNotNull(ServerSentEvent::data)
+                    .map(this::extractStreamedText)
+                    .filter(text -> !text.isEmpty());
+        })
+                .doOnComplete(() -> log.info("Completed streaming response from Gemini API"))
+                .onErrorMap(e -> translateError(e, "Gemini streaming API", "Failed to stream from Gemini AI"));
+    }
+
+    private String extractStreamedText(String chunk) {
+        try {
+            String text = responseExtractor.extractText(chunk);
+            return text != null ? text : "";
         } catch (Exception e) {
-            log.error("Error calling Gemini API: {}", e.getMessage());
-            throw new RuntimeException("Failed to call Gemini AI: " + e.getMessage(), e);
+            log.warn("Skipping unparseable Gemini stream chunk: {}", e.getMessage());
+            return "";
         }
     }
 
-    public String getAnswerWithImage(String question, byte[] imageBytes) {
-        try {
-            // Convert image bytes to base64
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-
-            // Determine image MIME type (assuming JPEG, but you might want to detect this)
-            String mimeType = "image/jpeg";
-
-            Map<String, Object> requestBody = Map.of(
-                    "contents", new Object[] {
-                            Map.of("parts", new Object[]{
-                                    Map.of("text", question),
-                                    Map.of(
-                                            "inline_data", Map.of(
-                                                    "mime_type", mimeType,
-                                                    "data", base64Image
-                                            )
-                                    )
-                            })
-                    }
-            );
-
-            String fullUrl = String.format("%s?key=%s", geminiApiUrl, geminiApiKey);
-
-            log.info("Sending request to Gemini API with image");
-
-            String response = webClient.post()
-                    .uri(fullUrl)
-                    .header("Content-Type", "application/json")
-                    .bodyValue(requestBody)
+    private Map<String, Object> generationConfig(Map<String, Object> responseSchema) {
+        if (responseSchema == null) {
+            return null;
+        }
+        return Map.of("responseMimeType", "application/json", "responseSchema", responseSchema);
+    }
+
+    // Structured and free-form answers to the same prompt must not be coalesced together
+    private String requestKey(String question, ByteBuffer image, Map<String, Object> responseSchema) {
+        StringBuilder key = new StringBuilder(HashUtils.sha256Hex(question));
+        if (image != null) {
+            key.append(':').append(HashUtils.sha256Hex(image));
+        }
+        if (responseSchema != null) {
+            key.append(":json:").append(HashUtils.sha256Hex(responseSchema.toString()));
+        }
+        return key.toString();
+    }
+
+    private Mono<GeminiResult> execute(BodyInserter<?, ? super ClientHttpRequest> requestBody, boolean withImage, Duration timeout) {
+        // Limiter sits inside the coalescer so joined callers do not consume extra permits
+        return rateLimiter.execute(() -> {
+            long startNanos = System.nanoTime();
+            return webClient.post()
+                    // Templated so the API key never ends up in the http.client.requests uri tag
+                    .uri(geminiApiUrl + "?key={key}", geminiApiKey)
+                    .body(requestBody)
                     .retrieve()
                     .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(45)) // Increased timeout for image processing
-                    .block();
-
-            log.info("Successfully received response from Gemini API with image analysis");
-            return response;
+                    .timeout(timeout)
+                    .map(response -> GeminiResult.builder()
+                            .rawResponse(response)
+                            .withImage(withImage)
+                            .latencyMs(Duration.ofNanos(System.nanoTime() - startNanos).toMillis())
+                            .build())
+                    // Upstream span starts once a limiter permit is held, so queueing shows up as the gap before it
+                    .name("gemini.generate")
+                    .tag("with_image", String.valueOf(withImage))
+                    .tap(Micrometer.observation(observationRegistry));
+        });
+    }
 
-        } catch (WebClientResponseException e) {
-            log.error("HTTP Error calling Gemini API with image - Status: {}, Response: {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Gemini API Error: " + e.getStatusCode(), e);
-        } catch (Exception e) {
-            log.error("Error calling Gemini API with image: {}", e.getMessage());
-            throw new RuntimeException("Failed to call Gemini AI with image: " + e.getMessage(), e);
+    private Throwable translateError(Throwable e, String target, String failureMessage) {
+        // Rejected input (e.g. an unsupported image format) is the caller's fault, not a Gemini failure
+        if (e instanceof IllegalArgumentException) {
+            return e;
+        }
+        if (e instanceof WebClientResponseException responseException) {
+            log.error("HTTP Error calling {} - Status: {}, Response: {}", target,
+                    responseException.getStatusCode(), responseException.getResponseBodyAsString());
+            return new RuntimeException("Gemini API Error: " + responseException.getStatusCode(), e);
         }
+        log.error("Error calling {}: {}", target, e.getMessage());
+        return new RuntimeException(failureMessage + ": " + e.getMessage(), e);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,310 @@
+package com.ubaid.ai_service.service;
+
+import com.ubaid.ai_service.util.ByteBufferImageInputStream;
+import com.ubaid.ai_service.util.HashUtils;
+import com.ubaid.ai_service.util.ImageFingerprint;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single image stage in front of every Gemini call that carries an image, whichever endpoint it came from.
+ * The format is sniffed from the magic bytes (clients' Content-Type is not trusted, and Gemini needs the real
+ * mime type). Images ImageIO can decode are downscaled to {@code image-normalization.max-dimension} on the long side
+ * and re-encoded as JPEG. Decoding is subsampled from the header dimensions, so a large photo is never held as a
+ * full-resolution raster. Small JPEG/PNG uploads are passed through unchanged, and so are WebP/HEIC, which ImageIO
+ * cannot decode, as long as they are under the pass-through limit.
+ *
+ * <p>Work runs on a bounded pool sized to the CPU count, off the Kafka, Tomcat and Netty threads. Concurrent
+ * requests for the same image bytes join the normalization already in progress.
+ */
+@Component
+@Slf4j
+public class ImageNormalizer {
+
+    private static final int THUMBNAIL_SIZE = 64;
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final long maxPassthroughBytes;
+    private final float jpegQuality;
+    private final Scheduler scheduler;
+    private final ObservationRegistry observationRegistry;
+    private final DistributionSummary outputBytes;
+    // Normalizations in progress by image hash; dropped as soon as each completes
+    private final Map<String, Mono<NormalizedImage>> inFlight = new ConcurrentHashMap<>();
+
+    public ImageNormalizer(@Value("${image-normalization.enabled:true}") boolean enabled,
+                           @Value("${image-normalization.max-dimension:1536}") int maxDimension,
+                           @Value("${image-normalization.max-passthrough-size:1MB}") DataSize maxPassthroughSize,
+                           @Value("${image-normalization.jpeg-quality:0.85}") float jpegQuality,
+                           @Value("${image-normalization.threads:0}") int threads,
+                           @Value("${image-normalization.queue-capacity:100}") int queueCapacity,
+                           ObservationRegistry observationRegistry,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.maxPassthroughBytes = maxPassthroughSize.toBytes();
+        this.jpegQuality = jpegQuality;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.scheduler = Schedulers.newBoundedElastic(poolSize, queueCapacity, "image-normalization");
+        this.observationRegistry = observationRegistry;
+        this.outputBytes = DistributionSummary.builder("gemini.image.bytes")
+                .description("Size of the image payload sent to Gemini after normalization")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param image read from its position to its limit; never consumed or modified
+     * @return the image to send, with its real mime type
+     */
+    public Mono<NormalizedImage> normalize(ByteBuffer image) {
+        return normalize(image, false);
+    }
+
+    /**
+     * @param fingerprint also compute the {@link ImageFingerprint} of the original upload; its dHash comes from
+     *                    pixels that are decoded for the resize anyway, or from a coarse subsampled read otherwise
+     */
+    public Mono<NormalizedImage> normalize(ByteBuffer image, boolean fingerprint) {
+        ByteBuffer view = image.duplicate();
+        // Keyed by the raw bytes' hash, so identical uploads arriving together share one decode, resize and dHash
+        return Mono.fromCallable(() -> HashUtils.sha256Hex(view))
+                .subscribeOn(scheduler)
+                .flatMap(sha256 -> inFlight.computeIfAbsent(sha256 + ":" + fingerprint, key -> {
+                    AtomicReference<Mono<NormalizedImage>> self = new AtomicReference<>();
+                    Mono<NormalizedImage> normalization = Mono.fromCallable(() -> normalizeBlocking(view, sha256, fingerprint))
+                            .subscribeOn(scheduler)
+                            .doFinally(signal -> inFlight.remove(key, self.get()))
+                            .share();
+                    self.set(normalization);
+                    return normalization;
+                }));
+    }
+
+    private NormalizedImage normalizeBlocking(ByteBuffer image, String sha256, boolean fingerprint) throws IOException {
+        ImageFormat format = ImageFormat.sniff(image);
+        if (format == null && !enabled) {
+            return new NormalizedImage(image, "image/jpeg", false, fingerprint ? new ImageFingerprint(sha256, null) : null);
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("Unsupported image format; expected JPEG, PNG, WebP, HEIC, GIF or BMP");
+        }
+
+        Observation observation = Observation.createNotStarted("gemini.image.normalization", observationRegistry)
+                .lowCardinalityKeyValue("image.format", format.name().toLowerCase())
+                .highCardinalityKeyValue("image.original.bytes", String.valueOf(image.remaining()));
+        return observation.observeChecked(() -> {
+            NormalizedImage normalized = normalize(image, format, fingerprint, sha256);
+            observation.lowCardinalityKeyValue("image.reencoded", String.valueOf(normalized.reencoded()));
+            outputBytes.record(normalized.data().remaining());
+            return normalized;
+        });
+    }
+
+    private NormalizedImage normalize(ByteBuffer image, ImageFormat format, boolean fingerprint, String sha256)
+            throws IOException {
+        int originalBytes = image.remaining();
+        if (!enabled || !format.decodable) {
+            if (enabled && originalBytes > maxPassthroughBytes) {
+                throw new IllegalArgumentException(format.mimeType + " images larger than "
+                        + maxPassthroughBytes / 1024 + " KB are not supported; please upload a JPEG or PNG");
+            }
+            return new NormalizedImage(image, format.mimeType, false, fingerprint ? new ImageFingerprint(sha256, null) : null);
+        }
+
+        try (ImageInputStream input = new ByteBufferImageInputStream(image)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("Image could not be decoded as " + format.mimeType);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                boolean fits = Math.max(width, height) <= maxDimension;
+                if (fits && originalBytes <= maxPassthroughBytes && format.passthrough) {
+                    return passthrough(image, format, fingerprint ? fingerprintFromThumbnail(reader, sha256) : null);
+                }
+
+                double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+                int targetWidth = Math.max(1, (int) Math.round(width * scale));
+                int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+                // Skip source pixels down to about 2x the target, then filter the rest to avoid aliasing
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.min(width / targetWidth, height / targetHeight) / 2);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage resized = draw(reader.read(0, param), targetWidth, targetHeight);
+                ImageFingerprint imageFingerprint = fingerprint
+                        ? new ImageFingerprint(sha256, ImageFingerprint.dHash(resized))
+                        : null;
+
+                byte[] encoded = encodeJpeg(resized);
+                if (fits && format.passthrough && encoded.length >= originalBytes) {
+                    // Already at model resolution and re-encoding did not shrink it
+                    return passthrough(image, format, imageFingerprint);
+                }
+                log.info("Normalized {} image for Gemini: {}x{} {} KB -> {}x{} {} KB", format.mimeType, width, height,
+                        originalBytes / 1024, targetWidth, targetHeight, encoded.length / 1024);
+                return new NormalizedImage(ByteBuffer.wrap(encoded), "image/jpeg", true, imageFingerprint);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private NormalizedImage passthrough(ByteBuffer image, ImageFormat format, ImageFingerprint fingerprint) {
+        return new NormalizedImage(image, format.mimeType, false, fingerprint);
+    }
+
+    // The image itself is sent as-is, so only a coarse (~64 px) read is needed for the dHash
+    private ImageFingerprint fingerprintFromThumbnail(ImageReader reader, String sha256) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        int subsampling = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / THUMBNAIL_SIZE);
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return new ImageFingerprint(sha256, ImageFingerprint.dHash(reader.read(0, param)));
+    }
+
+    // Halves with bilinear filtering while the source is more than 2x the target, then draws the final size
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = render(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return render(current, width, height);
+    }
+
+    // Renders onto white: JPEG has no alpha and transparent PNG areas would otherwise turn black
+    private BufferedImage render(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = target.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+
+    /**
+     * @param reencoded   false when the caller's buffer is passed through as-is
+     * @param fingerprint of the original upload; only present when requested
+     */
+    public record NormalizedImage(ByteBuffer data, String mimeType, boolean reencoded, ImageFingerprint fingerprint) {
+    }
+
+    private enum ImageFormat {
+        JPEG("image/jpeg", true, true),
+        PNG("image/png", true, true),
+        GIF("image/gif", true, false),
+        BMP("image/bmp", true, false),
+        WEBP("image/webp", false, true),
+        HEIC("image/heic", false, true);
+
+        private final String mimeType;
+        private final boolean decodable;
+        // Formats Gemini accepts as-is when already small enough
+        private final boolean passthrough;
+
+        ImageFormat(String mimeType, boolean decodable, boolean passthrough) {
+            this.mimeType = mimeType;
+            this.decodable = decodable;
+            this.passthrough = passthrough;
+        }
+
+        static ImageFormat sniff(ByteBuffer image) {
+            int p = image.position();
+            int n = image.remaining();
+            if (n >= 3 && (image.get(p) & 0xFF) == 0xFF && (image.get(p + 1) & 0xFF) == 0xD8 && (image.get(p + 2) & 0xFF) == 0xFF) {
+                return JPEG;
+            }
+            if (n >= 8 && startsWith(image, p, new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})) {
+                return PNG;
+            }
+            if (n >= 6 && startsWith(image, p, ascii("GIF8"))) {
+                return GIF;
+            }
+            if (n >= 2 && startsWith(image, p, ascii("BM"))) {
+                return BMP;
+            }
+            if (n >= 12 && startsWith(image, p, ascii("RIFF")) && startsWith(image, p + 8, ascii("WEBP"))) {
+                return WEBP;
+            }
+            // ISO-BMFF: box size, then "ftyp" and the major brand
+            if (n >= 12 && startsWith(image, p + 4, ascii("ftyp"))) {
+                for (String brand : new String[]{"heic", "heix", "heim", "heis", "mif1", "msf1"}) {
+                    if (startsWith(image, p + 8, ascii(brand))) {
+                        return HEIC;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static boolean startsWith(ByteBuffer image, int offset, byte[] magic) {
+            for (int i = 0; i < magic.length; i++) {
+                if (image.get(offset + i) != magic[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static byte[] ascii(String magic) {
+            return magic.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+}
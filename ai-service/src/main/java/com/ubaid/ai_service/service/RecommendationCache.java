@@ -0,0 +1,125 @@
+package com.ubaid.ai_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ubaid.ai_service.model.FertilizerRecommendation;
+import com.ubaid.ai_service.model.SoilData;
+import com.ubaid.ai_service.util.HashUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, TTL-evicting cache of AI fertilizer recommendations keyed by the normalized request.
+ * Local Caffeine tier first, then the optional shared {@link RecommendationCacheTier} (Redis).
+ * Only successful AI answers are stored - fallback recommendations never enter the cache.
+ */
+@Component
+@Slf4j
+public class RecommendationCache {
+
+    private final Cache<String, FertilizerRecommendation> localCache;
+    private final RecommendationCacheTier remoteTier;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    public RecommendationCache(MeterRegistry meterRegistry,
+                               ObjectProvider<RecommendationCacheTier> remoteTier,
+                               @Value("${recommendation.cache.max-size:10000}") long maxSize,
+                               @Value("${recommendation.cache.ttl:6h}") Duration ttl) {
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.remoteTier = remoteTier.getIfAvailable();
+
+        // Exposes cache.gets{result=hit|miss}, cache.evictions, cache.size for the local tier
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "soil.recommendation");
+        this.remoteHits = Counter.builder("soil.recommendation.cache.remote")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.remoteMisses = Counter.builder("soil.recommendation.cache.remote")
+                .tag("result", "miss")
+                .register(meterRegistry);
+
+        log.info("Recommendation cache initialised: maxSize={}, ttl={}, remoteTier={}",
+                maxSize, ttl, this.remoteTier != null ? this.remoteTier.getClass().getSimpleName() : "none");
+    }
+
+    /**
+     * Returns the cached recommendation for this request, or subscribes to {@code loader} and caches its
+     * value. Errors from the loader are propagated untouched and nothing is cached for them.
+     */
+    public Mono<FertilizerRecommendation> getOrLoad(SoilData soilData, Supplier<Mono<FertilizerRecommendation>> loader) {
+        String key = buildKey(soilData);
+
+        FertilizerRecommendation local = localCache.getIfPresent(key);
+        if (local != null) {
+            return Mono.just(local);
+        }
+
+        Mono<FertilizerRecommendation> loadAndStore = Mono.defer(loader)
+                .flatMap(recommendation -> store(key, recommendation).thenReturn(recommendation));
+
+        if (remoteTier == null) {
+            return loadAndStore;
+        }
+
+        return remoteTier.get(key)
+                .doOnNext(recommendation -> {
+                    remoteHits.increment();
+                    localCache.put(key, recommendation);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    remoteMisses.increment();
+                    return loadAndStore;
+                }));
+    }
+
+    private Mono<Void> store(String key, FertilizerRecommendation recommendation) {
+        localCache.put(key, recommendation);
+        return remoteTier != null ? remoteTier.put(key, recommendation) : Mono.empty();
+    }
+
+    // A claim-check reference is already the image's SHA-256, so the blob never has to be read for a hit
+    private String imageHash(SoilData soilData) {
+        if (soilData.getSoilImageRef() != null) {
+            return soilData.getSoilImageRef();
+        }
+        if (soilData.getSoilImageBuffer() != null) {
+            return HashUtils.sha256Hex(soilData.getSoilImageBuffer());
+        }
+        return soilData.getSoilImage() != null ? HashUtils.sha256Hex(soilData.getSoilImage()) : "";
+    }
+
+    /**
+     * Canonical request key: every field that shapes the prompt, normalized so that casing and
+     * whitespace differences from clients still hit the same entry.
+     */
+    String buildKey(SoilData soilData) {
+        String canonical = String.join("|",
+                normalize(soilData.getCropType()),
+                soilData.getSeason() != null ? soilData.getSeason().name() : "",
+                normalize(soilData.getSoilType()),
+                normalize(soilData.getLanguage()),
+                normalize(soilData.getLocation()),
+                soilData.getAreaValue() != null ? String.format(Locale.ROOT, "%.2f", soilData.getAreaValue()) : "",
+                soilData.getAreaUnit() != null ? soilData.getAreaUnit().name() : "",
+                imageHash(soilData));
+        return HashUtils.sha256Hex(canonical);
+    }
+
+    private String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
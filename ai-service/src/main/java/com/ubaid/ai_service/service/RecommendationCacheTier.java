@@ -0,0 +1,15 @@
+package com.ubaid.ai_service.service;
+
+import com.ubaid.ai_service.model.FertilizerRecommendation;
+import reactor.core.publisher.Mono;
+
+/**
+ * Shared second-level store behind {@link RecommendationCache}, so replicas of ai-service can reuse
+ * each other's recommendations. Implementations must never fail the caller: errors resolve to empty.
+ */
+public interface RecommendationCacheTier {
+
+    Mono<FertilizerRecommendation> get(String key);
+
+    Mono<Void> put(String key, FertilizerRecommendation recommendation);
+}
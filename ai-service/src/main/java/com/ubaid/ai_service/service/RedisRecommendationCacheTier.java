@@ -0,0 +1,59 @@
+package com.ubaid.ai_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ubaid.ai_service.model.FertilizerRecommendation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "recommendation.cache.redis.enabled", havingValue = "true")
+public class RedisRecommendationCacheTier implements RecommendationCacheTier {
+
+    private static final String KEY_PREFIX = "soil-recommendation:";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    public RedisRecommendationCacheTier(ReactiveStringRedisTemplate redisTemplate,
+                                        ObjectMapper objectMapper,
+                                        @Value("${recommendation.cache.redis.ttl:24h}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Mono<FertilizerRecommendation> get(String key) {
+        return redisTemplate.opsForValue().get(KEY_PREFIX + key)
+                .map(json -> {
+                    try {
+                        return objectMapper.readValue(json, FertilizerRecommendation.class);
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Corrupt cached recommendation for key " + key, e);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Redis recommendation lookup failed: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public Mono<Void> put(String key, FertilizerRecommendation recommendation) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(recommendation))
+                .flatMap(json -> redisTemplate.opsForValue().set(KEY_PREFIX + key, json, ttl))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Redis recommendation store failed: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
@@ -1,177 +1,255 @@
 package com.ubaid.ai_service.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ubaid.ai_service.model.FertilizerDetail;
 import com.ubaid.ai_service.model.FertilizerRecommendation;
+import com.ubaid.ai_service.model.GeminiResult;
 import com.ubaid.ai_service.model.SoilData;
+import com.ubaid.ai_service.util.GeminiSchemaUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class SoilAIService {
 
-    private final GeminiService geminiService;
+    // Only the fields Gemini fills in; request echo fields and createdAt are set locally
+    private static final Map<String, Object> RECOMMENDATION_SCHEMA = GeminiSchemaUtils.objectSchema(
+            FertilizerRecommendation.class,
+            "detectedSoilType", "generalRecommendation", "fertilizers",
+            "applicationTips", "seasonalAdvice", "pesticideRecommendation");
 
-    public SoilAIService(GeminiService geminiService) {
+    private final GeminiService geminiService;
+    private final RecommendationCache recommendationCache;
+    private final GeminiResponseExtractor responseExtractor;
+    private final BlobStore blobStore;
+    private final ImageNormalizer imageNormalizer;
+    private final SoilTypeDetectionCache soilTypeCache;
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+
+    public SoilAIService(GeminiService geminiService, RecommendationCache recommendationCache,
+                         GeminiResponseExtractor responseExtractor, BlobStore blobStore,
+                         ImageNormalizer imageNormalizer, SoilTypeDetectionCache soilTypeCache,
+                         ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
         this.geminiService = geminiService;
+        this.recommendationCache = recommendationCache;
+        this.responseExtractor = responseExtractor;
+        this.blobStore = blobStore;
+        this.imageNormalizer = imageNormalizer;
+        this.soilTypeCache = soilTypeCache;
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
     }
 
+    @Value("${gemini.structured-output.enabled:true}")
+    private boolean structuredOutputEnabled;
+
     public FertilizerRecommendation generateFertilizerRecommendation(SoilData soilData) {
-        try {
-            String prompt = createPromptForSoilAnalysis(soilData);
-            String aiResponse;
-
-            // Choose the appropriate method based on available data
-            if (soilData.getSoilImage() != null) {
-                aiResponse = geminiService.getAnswerWithImage(prompt, soilData.getSoilImage());
-            } else {
-                aiResponse = geminiService.getAnswer(prompt);
-            }
+        return generateFertilizerRecommendationAsync(soilData).block();
+    }
 
-            System.out.println("RESPONSE FROM AI: " + aiResponse);
-            return processAiResponse(soilData, aiResponse);
-        } catch (Exception e) {
-            System.err.println("Error generating fertilizer recommendation for crop: " + soilData.getCropType() +
-                    ", Error: " + e.getMessage());
-            return createDefaultRecommendation(soilData);
-        }
+    public Mono<FertilizerRecommendation> generateFertilizerRecommendationAsync(SoilData soilData) {
+        // Invalid input (e.g. an unsupported soil image) is reported to the caller rather than answered with the default
+        return generateAiRecommendationAsync(soilData)
+                .onErrorResume(e -> !(e instanceof IllegalArgumentException), e -> {
+                    System.err.println("Error generating fertilizer recommendation for crop: " + soilData.getCropType() +
+                            ", Error: " + e.getMessage());
+                    return Mono.just(createFallbackRecommendation(soilData, "request"));
+                });
     }
 
-    private FertilizerRecommendation processAiResponse(SoilData soilData, String aiResponse) {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(aiResponse);
+    /**
+     * Default recommendation served in place of a Gemini answer. Counted per path so the share of farmers
+     * getting the generic answer is visible next to the request rate.
+     *
+     * @param path where the fallback happened, e.g. {@code request} or {@code dead_letter}
+     */
+    public FertilizerRecommendation createFallbackRecommendation(SoilData soilData, String path) {
+        Counter.builder("soil.analysis.fallback")
+                .description("Recommendations answered with the default instead of Gemini")
+                .tag("path", path)
+                .register(meterRegistry)
+                .increment();
+        return createDefaultRecommendation(soilData);
+    }
 
-            // Extract text from Gemini response structure
-            JsonNode candidatesNode = rootNode.path("candidates");
-            if (candidatesNode.isEmpty() || !candidatesNode.isArray()) {
-                System.out.println("No candidates found in AI response");
-                return createDefaultRecommendation(soilData);
-            }
+    /**
+     * Same as {@link #generateFertilizerRecommendationAsync} but propagates Gemini/parse failures instead of
+     * substituting the default recommendation, so callers with their own retry path can tell the two apart.
+     */
+    public Mono<FertilizerRecommendation> generateAiRecommendationAsync(SoilData soilData) {
+        return recommendationCache.getOrLoad(soilData, () -> requestAiRecommendation(soilData));
+    }
 
-            JsonNode textNode = candidatesNode.get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text");
+    private Mono<FertilizerRecommendation> requestAiRecommendation(SoilData soilData) {
+        // Choose the appropriate method based on available data
+        // In structured-output mode Gemini is constrained to the model schema and returns bare JSON
+        Map<String, Object> responseSchema = structuredOutputEnabled ? RECOMMENDATION_SCHEMA : null;
+        // Only reached on a cache miss, so claim-checked images are fetched only when Gemini needs them
+        return resolveSoilImage(soilData)
+                .flatMap(image -> requestWithImage(soilData, image, responseSchema))
+                .switchIfEmpty(Mono.defer(() -> requestRecommendation(soilData,
+                        geminiService.getAnswerAsync(buildPrompt(soilData, null), responseSchema), responseSchema)));
+    }
 
-            if (textNode.isMissingNode() || textNode.asText().trim().isEmpty()) {
-                System.out.println("No text found in AI response");
-                return createDefaultRecommendation(soilData);
-            }
+    private Mono<FertilizerRecommendation> requestWithImage(SoilData soilData, ByteBuffer image,
+                                                            Map<String, Object> responseSchema) {
+        // Fingerprinted during normalization; a photo seen before only needs its soil type, not another image upload
+        return imageNormalizer.normalize(image, true).flatMap(normalized -> soilTypeCache.find(normalized.fingerprint(), soilData.getLanguage())
+                .map(knownSoilType -> requestRecommendation(soilData,
+                        geminiService.getAnswerAsync(buildPrompt(soilData, knownSoilType), responseSchema), responseSchema))
+                .orElseGet(() -> requestRecommendation(soilData,
+                        geminiService.getAnswerWithImageAsync(buildPrompt(soilData, null), normalized, responseSchema),
+                        responseSchema)
+                        .doOnNext(recommendation -> rememberSoilType(soilData, normalized, recommendation))));
+    }
 
-            String jsonContent = cleanJsonResponse(textNode.asText());
-            System.out.println("CLEANED JSON CONTENT: " + jsonContent);
+    private String buildPrompt(SoilData soilData, String knownSoilType) {
+        return Observation.createNotStarted("soil.analysis.prompt.build", observationRegistry)
+                .observe(() -> createPromptForSoilAnalysis(soilData, knownSoilType));
+    }
 
-            // Parse the cleaned JSON content
-            JsonNode analysisJson = mapper.readTree(jsonContent);
+    private Mono<FertilizerRecommendation> requestRecommendation(SoilData soilData, Mono<GeminiResult> aiResponse,
+                                                                 Map<String, Object> responseSchema) {
+        return aiResponse.map(result -> {
+            System.out.println("RESPONSE FROM AI: " + result.getRawResponse());
+            return Observation.createNotStarted("soil.analysis.response.parse", observationRegistry)
+                    .lowCardinalityKeyValue("structured", String.valueOf(responseSchema != null))
+                    .observe(() -> processAiResponse(soilData, result.getRawResponse()));
+        });
+    }
 
-            String detectedSoilType = analysisJson.path("detectedSoilType").asText("Unknown");
-            String generalRecommendation = analysisJson.path("generalRecommendation").asText();
-            List<FertilizerDetail> fertilizers = extractFertilizerDetails(analysisJson.path("fertilizers"), soilData.getCropType());
-            List<String> applicationTips = extractStringList(analysisJson.path("applicationTips"));
-            List<String> seasonalAdvice = extractStringList(analysisJson.path("seasonalAdvice"));
-            List<String> pesticideRecommendation = extractStringList(analysisJson.path("pesticideRecommendation"));
+    // Only pure image detections are remembered; with a user-provided type Gemini may just echo it back.
+    // The detected type is in the response language, so it is only reused for requests in the same language
+    private void rememberSoilType(SoilData soilData, ImageNormalizer.NormalizedImage image,
+                                  FertilizerRecommendation recommendation) {
+        if (soilData.getSoilType() == null || soilData.getSoilType().isBlank()) {
+            soilTypeCache.put(image.fingerprint(), soilData.getLanguage(), recommendation.getDetectedSoilType());
+        }
+    }
 
-            // Ensure only 2 fertilizers maximum
-            if (fertilizers.size() > 2) {
-                fertilizers = fertilizers.subList(0, 2);
-            }
+    /**
+     * The upload's own image, or the claim-checked one read from the blob store. The blob is kept in a local
+     * buffer rather than set on {@code soilData}: for Kafka records that object is the listener payload, which the
+     * retry/DLT recoverer republishes, and it must keep carrying only the reference.
+     */
+    private Mono<ByteBuffer> resolveSoilImage(SoilData soilData) {
+        if (soilData.getSoilImage() != null) {
+            return Mono.just(ByteBuffer.wrap(soilData.getSoilImage()));
+        }
+        // Spooled uploads are passed through as their mapped buffer
+        if (soilData.getSoilImageBuffer() != null) {
+            return Mono.just(soilData.getSoilImageBuffer());
+        }
+        if (soilData.getSoilImageRef() == null) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> blobStore.get(soilData.getSoilImageRef()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ByteBuffer::wrap);
+    }
 
-            // Ensure pesticide recommendations are limited to 3-4 lines
-            if (pesticideRecommendation.size() > 4) {
-                pesticideRecommendation = pesticideRecommendation.subList(0, 4);
+    private FertilizerRecommendation processAiResponse(SoilData soilData, String aiResponse) {
+        try {
+            // Extract text from Gemini response structure
+            String answerText = responseExtractor.extractText(aiResponse);
+            if (answerText == null || answerText.trim().isEmpty()) {
+                throw new IllegalStateException("No text found in AI response");
             }
 
-            return FertilizerRecommendation.builder()
-                    .detectedSoilType(detectedSoilType.isEmpty() ? "Unknown" : detectedSoilType)
-                    .cropType(soilData.getCropType())
-                    .areaValue(soilData.getAreaValue())
-                    .areaUnit(soilData.getAreaUnit().toString())
-                    .season(soilData.getSeason().toString())
-                    .language(soilData.getLanguage())
-                    .generalRecommendation(generalRecommendation.isEmpty() ?
-                            "AI recommendation for " + soilData.getCropType() + " cultivation." :
-                            generalRecommendation)
-                    .fertilizers(fertilizers)
-                    .applicationTips(applicationTips)
-                    .seasonalAdvice(seasonalAdvice)
-                    .pesticideRecommendation(pesticideRecommendation.isEmpty() ?
-                            getDefaultPesticideRecommendation(soilData.getCropType(), soilData.getSeason().toString()) :
-                            pesticideRecommendation)
-                    .createdAt(LocalDateTime.now())
-                    .build();
+            // Bind the embedded JSON answer straight onto the model
+            FertilizerRecommendation analysis = responseExtractor.bindJson(answerText, FertilizerRecommendation.class);
+            return completeRecommendation(soilData, analysis);
 
         } catch (Exception e) {
             System.err.println("Error processing AI response for crop: " + soilData.getCropType() +
                     ", Error: " + e.getMessage());
-            return createDefaultRecommendation(soilData);
+            // Surface the failure so the caller falls back without caching the default answer
+            throw new IllegalStateException("Unparseable AI response: " + e.getMessage(), e);
         }
     }
 
-    private String cleanJsonResponse(String rawResponse) {
-        // Remove markdown code blocks and clean up the response
-        String cleaned = rawResponse
-                .replaceAll("```json", "")
-                .replaceAll("```", "")
-                .replaceAll("\\\\n", "\n")
-                .trim();
-
-        // Find JSON content between curly braces
-        int startIndex = cleaned.indexOf("{");
-        int endIndex = cleaned.lastIndexOf("}");
-
-        if (startIndex != -1 && endIndex != -1 && endIndex > startIndex) {
-            cleaned = cleaned.substring(startIndex, endIndex + 1);
+    private FertilizerRecommendation completeRecommendation(SoilData soilData, FertilizerRecommendation analysis) {
+        String detectedSoilType = analysis.getDetectedSoilType() != null ? analysis.getDetectedSoilType().trim() : "";
+        String generalRecommendation = analysis.getGeneralRecommendation() != null ? analysis.getGeneralRecommendation() : "";
+        List<FertilizerDetail> fertilizers = normalizeFertilizerDetails(analysis.getFertilizers(), soilData.getCropType());
+        List<String> applicationTips = normalizeStringList(analysis.getApplicationTips());
+        List<String> seasonalAdvice = normalizeStringList(analysis.getSeasonalAdvice());
+        List<String> pesticideRecommendation = normalizeStringList(analysis.getPesticideRecommendation());
+
+        // Ensure pesticide recommendations are limited to 3-4 lines
+        if (pesticideRecommendation.size() > 4) {
+            pesticideRecommendation = pesticideRecommendation.subList(0, 4);
         }
 
-        return cleaned;
+        return FertilizerRecommendation.builder()
+                .detectedSoilType(detectedSoilType.isEmpty() ? "Unknown" : detectedSoilType)
+                .cropType(soilData.getCropType())
+                .areaValue(soilData.getAreaValue())
+                .areaUnit(soilData.getAreaUnit().toString())
+                .season(soilData.getSeason().toString())
+                .language(soilData.getLanguage())
+                .generalRecommendation(generalRecommendation.isEmpty() ?
+                        "AI recommendation for " + soilData.getCropType() + " cultivation." :
+                        generalRecommendation)
+                .fertilizers(fertilizers)
+                .applicationTips(applicationTips)
+                .seasonalAdvice(seasonalAdvice)
+                .pesticideRecommendation(pesticideRecommendation.isEmpty() ?
+                        getDefaultPesticideRecommendation(soilData.getCropType(), soilData.getSeason().toString()) :
+                        pesticideRecommendation)
+                .createdAt(LocalDateTime.now())
+                .build();
     }
 
-    private List<FertilizerDetail> extractFertilizerDetails(JsonNode fertilizersNode, String cropType) {
+    private List<FertilizerDetail> normalizeFertilizerDetails(List<FertilizerDetail> parsed, String cropType) {
         List<FertilizerDetail> fertilizers = new ArrayList<>();
-        if (fertilizersNode.isArray()) {
-            int count = 0;
-            for (JsonNode fertilizer : fertilizersNode) {
-                if (count >= 2) break; // Limit to 2 fertilizers only
-                try {
-                    FertilizerDetail detail = FertilizerDetail.builder()
-                            .name(fertilizer.path("name").asText("Unknown Fertilizer"))
-                            .company(fertilizer.path("company").asText("IFFCO"))
-                            .quantity(fertilizer.path("quantity").asText("50 kg per acre"))
-                            .applicationMethod(fertilizer.path("applicationMethod").asText("As per package instructions"))
-                            .npkRatio(fertilizer.path("npkRatio").asText("20:20:20"))
-                            .build();
-                    fertilizers.add(detail);
-                    count++;
-                } catch (Exception e) {
-                    System.out.println("Error parsing fertilizer detail: " + e.getMessage());
-                }
+        if (parsed != null) {
+            for (FertilizerDetail fertilizer : parsed) {
+                if (fertilizers.size() >= 2) break; // Limit to 2 fertilizers only
+                if (fertilizer == null) continue;
+                fertilizers.add(FertilizerDetail.builder()
+                        .name(valueOrDefault(fertilizer.getName(), "Unknown Fertilizer"))
+                        .company(valueOrDefault(fertilizer.getCompany(), "IFFCO"))
+                        .quantity(valueOrDefault(fertilizer.getQuantity(), "50 kg per acre"))
+                        .applicationMethod(valueOrDefault(fertilizer.getApplicationMethod(), "As per package instructions"))
+                        .npkRatio(valueOrDefault(fertilizer.getNpkRatio(), "20:20:20"))
+                        .build());
             }
         }
         return fertilizers.isEmpty() ? getDefaultFertilizers(cropType) : fertilizers;
     }
 
-    private List<String> extractStringList(JsonNode arrayNode) {
+    private List<String> normalizeStringList(List<String> items) {
         List<String> result = new ArrayList<>();
-        if (arrayNode.isArray()) {
-            arrayNode.forEach(item -> {
-                String text = item.asText().trim();
+        if (items != null) {
+            for (String item : items) {
+                String text = item != null ? item.trim() : "";
                 if (!text.isEmpty() && text.length() > 5) { // Filter out very short text
                     result.add(text);
                 }
-            });
+            }
         }
         return result;
     }
 
-    private FertilizerRecommendation createDefaultRecommendation(SoilData soilData) {
+    private String valueOrDefault(String value, String defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+
+    public FertilizerRecommendation createDefaultRecommendation(SoilData soilData) {
         String detectedSoilType = soilData.getSoilType() != null ? soilData.getSoilType() : "Unknown";
 
         return FertilizerRecommendation.builder()
@@ -312,7 +390,11 @@ public class SoilAIService {
         }
     }
 
-    private String createPromptForSoilAnalysis(SoilData soilData) {
+    /**
+     * @param knownSoilType soil type previously detected from this (or a near-identical) soil image; when set the
+     *                      prompt is built for a request without an image
+     */
+    private String createPromptForSoilAnalysis(SoilData soilData, String knownSoilType) {
         String cropType = soilData.getCropType();
         Double areaValue = soilData.getAreaValue();
         String areaUnit = soilData.getAreaUnit().toString();
@@ -320,10 +402,11 @@ public class SoilAIService {
         String location = soilData.getLocation() != null ? soilData.getLocation() : "India";
         String language = soilData.getLanguage();
         String providedSoilType = soilData.getSoilType();
-        boolean hasImage = soilData.getSoilImage() != null;
+        boolean hasImage = knownSoilType == null && (soilData.getSoilImage() != null
+                || soilData.getSoilImageBuffer() != null || soilData.getSoilImageRef() != null);
 
         String languageInstruction = getLanguageInstruction(language);
-        String soilAnalysisInstruction = createSoilAnalysisInstruction(providedSoilType, hasImage);
+        String soilAnalysisInstruction = createSoilAnalysisInstruction(providedSoilType, hasImage, knownSoilType);
 
         return String.format("""
         You are an expert agricultural consultant specializing in soil analysis and fertilizer recommendations for Indian farming conditions.
@@ -393,18 +476,22 @@ public class SoilAIService {
         """,
                 languageInstruction,
                 soilAnalysisInstruction,
-                getSoilTypeForResponse(providedSoilType, hasImage),
+                getSoilTypeForResponse(providedSoilType, hasImage, knownSoilType),
                 cropType, areaValue, areaUnit.toLowerCase(),
                 season.toLowerCase(), location,
                 getLocationInfo(location),
-                getSoilAnalysisRequirement(providedSoilType, hasImage),
+                getSoilAnalysisRequirement(providedSoilType, hasImage, knownSoilType),
                 areaValue, areaUnit.toLowerCase(),
                 season.toLowerCase(), cropType.toLowerCase()
         );
     }
 
-    private String createSoilAnalysisInstruction(String providedSoilType, boolean hasImage) {
-        if (providedSoilType != null && hasImage) {
+    private String createSoilAnalysisInstruction(String providedSoilType, boolean hasImage, String knownSoilType) {
+        if (providedSoilType != null && knownSoilType != null) {
+            return String.format("SOIL ANALYSIS: User provided soil type '%s'. Analysis of the user's soil image detected '%s'. Verify the provided type against it and provide additional insights.", providedSoilType, knownSoilType);
+        } else if (knownSoilType != null) {
+            return String.format("SOIL ANALYSIS: Soil type '%s' was detected from the user's soil image. Base recommendations on this soil type.", knownSoilType);
+        } else if (providedSoilType != null && hasImage) {
             return String.format("SOIL ANALYSIS: User provided soil type '%s'. Also analyze the soil image to verify and provide additional insights.", providedSoilType);
         } else if (providedSoilType != null) {
             return String.format("SOIL ANALYSIS: User provided soil type '%s'. Base recommendations on this soil type.", providedSoilType);
@@ -415,8 +502,12 @@ public class SoilAIService {
         }
     }
 
-    private String getSoilTypeForResponse(String providedSoilType, boolean hasImage) {
-        if (providedSoilType != null && hasImage) {
+    private String getSoilTypeForResponse(String providedSoilType, boolean hasImage, String knownSoilType) {
+        if (providedSoilType != null && knownSoilType != null) {
+            return "Verify provided soil type '" + providedSoilType + "' against detected soil type '" + knownSoilType + "' or use provided type";
+        } else if (knownSoilType != null) {
+            return knownSoilType;
+        } else if (providedSoilType != null && hasImage) {
             return "Verify provided soil type '" + providedSoilType + "' with image analysis or use provided type";
         } else if (providedSoilType != null) {
             return providedSoilType;
@@ -431,8 +522,12 @@ public class SoilAIService {
         return location != null ? "- Provided Location: " + location : "";
     }
 
-    private String getSoilAnalysisRequirement(String providedSoilType, boolean hasImage) {
-        if (providedSoilType != null && hasImage) {
+    private String getSoilAnalysisRequirement(String providedSoilType, boolean hasImage, String knownSoilType) {
+        if (providedSoilType != null && knownSoilType != null) {
+            return String.format("Use provided soil type '%s' and note any discrepancy with the soil type '%s' detected from the image", providedSoilType, knownSoilType);
+        } else if (knownSoilType != null) {
+            return String.format("Base analysis on soil type '%s' detected from the soil image", knownSoilType);
+        } else if (providedSoilType != null && hasImage) {
             return String.format("Use provided soil type '%s' and verify with image analysis if any discrepancy found", providedSoilType);
         } else if (providedSoilType != null) {
             return String.format("Base analysis on provided soil type '%s'", providedSoilType);
@@ -1,12 +1,13 @@
 package com.ubaid.ai_service.service;
 
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ubaid.ai_service.model.SoilData;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
 
 @Service
 @Slf4j
@@ -15,21 +16,35 @@ public class SoilHealthCardService {
 
     private final GeminiService geminiService;
     private final SoilAIService soilAIService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeminiResponseExtractor responseExtractor;
 
     public SoilData extractSoilDataFromHealthCard(byte[] healthCardImage, String language) {
-        try {
-            String prompt = createSoilHealthCardExtractionPrompt(language);
-            String aiResponse = geminiService.getAnswerWithImage(prompt, healthCardImage);
+        return extractSoilDataFromHealthCardAsync(healthCardImage, language).block();
+    }
 
-            log.info("Received AI response for soil health card extraction");
-            return parseSoilDataFromAiResponse(aiResponse, healthCardImage, language);
+    public Mono<SoilData> extractSoilDataFromHealthCardAsync(byte[] healthCardImage, String language) {
+        return extractSoilDataFromHealthCardAsync(ByteBuffer.wrap(healthCardImage), language);
+    }
 
-        } catch (Exception e) {
-            log.error("Error extracting data from soil health card: {}", e.getMessage());
-            // Return default soil data if extraction fails
-            return createDefaultSoilData(language, healthCardImage);
-        }
+    /**
+     * @param healthCardImage typically the memory-mapped view of a spooled upload; it is kept on the returned
+     *                        {@link SoilData} as the soil image, so the caller must keep it valid until the
+     *                        recommendation built from that SoilData has completed
+     */
+    public Mono<SoilData> extractSoilDataFromHealthCardAsync(ByteBuffer healthCardImage, String language) {
+        return Mono.defer(() -> {
+                    String prompt = createSoilHealthCardExtractionPrompt(language);
+                    return geminiService.getAnswerWithImageAsync(prompt, healthCardImage);
+                })
+                .map(result -> {
+                    log.info("Received AI response for soil health card extraction");
+                    return parseSoilDataFromAiResponse(result.getRawResponse(), healthCardImage, language);
+                })
+                .onErrorResume(e -> !(e instanceof IllegalArgumentException), e -> {
+                    log.error("Error extracting data from soil health card: {}", e.getMessage());
+                    // Return default soil data if extraction fails
+                    return Mono.just(createDefaultSoilData(language, healthCardImage));
+                });
     }
 
     private String createSoilHealthCardExtractionPrompt(String language) {
@@ -83,61 +98,32 @@ public class SoilHealthCardService {
             """, languageInstruction);
     }
 
-    private SoilData parseSoilDataFromAiResponse(String aiResponse, byte[] healthCardImage, String language) {
+    private SoilData parseSoilDataFromAiResponse(String aiResponse, ByteBuffer healthCardImage, String language) {
         try {
-            JsonNode rootNode = objectMapper.readTree(aiResponse);
-
             // Extract text from Gemini response structure
-            JsonNode candidatesNode = rootNode.path("candidates");
-            if (candidatesNode.isEmpty() || !candidatesNode.isArray()) {
-                log.warn("No candidates found in AI response for soil health card");
-                return createDefaultSoilData(language, healthCardImage);
-            }
-
-            JsonNode textNode = candidatesNode.get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text");
-
-            if (textNode.isMissingNode() || textNode.asText().trim().isEmpty()) {
+            String answerText = responseExtractor.extractText(aiResponse);
+            if (answerText == null || answerText.trim().isEmpty()) {
                 log.warn("No text found in AI response for soil health card");
                 return createDefaultSoilData(language, healthCardImage);
             }
 
-            String jsonContent = cleanJsonResponse(textNode.asText());
-            log.info("Cleaned JSON content from soil health card: {}", jsonContent);
-
-            // Parse the extracted JSON
-            JsonNode extractedData = objectMapper.readTree(jsonContent);
+            // Bind the extracted JSON directly; unknown enum values come back as null and get defaults below
+            SoilData soilData = responseExtractor.bindJson(answerText, SoilData.class);
 
-            // Create SoilData object from extracted information
-            SoilData soilData = new SoilData();
-
-            // Set basic information
-            soilData.setSoilType(extractedData.path("soilType").asText(null));
-            soilData.setCropType(extractedData.path("cropType").asText("wheat")); // default crop
-            soilData.setAreaValue(extractedData.path("areaValue").asDouble(1.0));
-
-            // Parse area unit
-            String areaUnitStr = extractedData.path("areaUnit").asText("ACRE");
-            try {
-                soilData.setAreaUnit(SoilData.AreaUnit.valueOf(areaUnitStr.toUpperCase()));
-            } catch (Exception e) {
+            if (soilData.getCropType() == null) {
+                soilData.setCropType("wheat"); // default crop
+            }
+            if (soilData.getAreaValue() == null) {
+                soilData.setAreaValue(1.0);
+            }
+            if (soilData.getAreaUnit() == null) {
                 soilData.setAreaUnit(SoilData.AreaUnit.ACRE);
             }
-
-            // Parse season
-            String seasonStr = extractedData.path("season").asText("KHARIF");
-            try {
-                soilData.setSeason(SoilData.Season.valueOf(seasonStr.toUpperCase()));
-            } catch (Exception e) {
+            if (soilData.getSeason() == null) {
                 soilData.setSeason(SoilData.Season.KHARIF);
             }
-
-            soilData.setLocation(extractedData.path("location").asText(null));
             soilData.setLanguage(language);
-            soilData.setSoilImage(healthCardImage); // Store the health card image
+            soilData.setSoilImageBuffer(healthCardImage); // Store the health card image
 
             log.info("Successfully extracted soil data from health card: CropType={}, SoilType={}, Location={}",
                     soilData.getCropType(), soilData.getSoilType(), soilData.getLocation());
@@ -150,26 +136,7 @@ public class SoilHealthCardService {
         }
     }
 
-    private String cleanJsonResponse(String rawResponse) {
-        // Remove markdown code blocks and clean up the response
-        String cleaned = rawResponse
-                .replaceAll("```json", "")
-                .replaceAll("```", "")
-                .replaceAll("\\\\n", "\n")
-                .trim();
-
-        // Find JSON content between curly braces
-        int startIndex = cleaned.indexOf("{");
-        int endIndex = cleaned.lastIndexOf("}");
-
-        if (startIndex != -1 && endIndex != -1 && endIndex > startIndex) {
-            cleaned = cleaned.substring(startIndex, endIndex + 1);
-        }
-
-        return cleaned;
-    }
-
-    private SoilData createDefaultSoilData(String language, byte[] healthCardImage) {
+    private SoilData createDefaultSoilData(String language, ByteBuffer healthCardImage) {
         SoilData soilData = new SoilData();
         soilData.setSoilType("loamy"); // Default soil type
         soilData.setCropType("wheat"); // Default crop
@@ -178,7 +145,7 @@ public class SoilHealthCardService {
         soilData.setSeason(SoilData.Season.KHARIF);
         soilData.setLocation("India");
         soilData.setLanguage(language);
-        soilData.setSoilImage(healthCardImage);
+        soilData.setSoilImageBuffer(healthCardImage);
 
         log.info("Created default soil data for failed health card extraction");
         return soilData;
@@ -0,0 +1,116 @@
+package com.ubaid.ai_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ubaid.ai_service.util.ImageFingerprint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Soil types Gemini detected from earlier soil images, keyed by {@link ImageFingerprint}. A repeat upload of the
+ * same photo (equal SHA-256) or a near-identical re-shot (dHash within {@code soil-type-cache.max-hamming-distance}
+ * bits) reuses the detection, so the recommendation prompt can go out without the image. Unlike
+ * {@link RecommendationCache} this ignores crop and season, which do not change what the soil looks like. The
+ * language is part of the key because Gemini names the detected soil type in the response language.
+ *
+ * <p>Near matches are found by a linear scan; at the default size that is 10k XOR/bit-counts, a few microseconds
+ * against a multimodal Gemini call.
+ */
+@Component
+@Slf4j
+public class SoilTypeDetectionCache {
+
+    private final boolean enabled;
+    private final int maxHammingDistance;
+    private final Cache<String, Detection> detections;
+    private final Counter exactHits;
+    private final Counter similarHits;
+    private final Counter misses;
+
+    public SoilTypeDetectionCache(MeterRegistry meterRegistry,
+                                  @Value("${soil-type-cache.enabled:true}") boolean enabled,
+                                  @Value("${soil-type-cache.max-size:10000}") long maxSize,
+                                  @Value("${soil-type-cache.ttl:24h}") Duration ttl,
+                                  @Value("${soil-type-cache.max-hamming-distance:6}") int maxHammingDistance) {
+        this.enabled = enabled;
+        this.maxHammingDistance = maxHammingDistance;
+        this.detections = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.exactHits = lookups(meterRegistry, "exact");
+        this.similarHits = lookups(meterRegistry, "similar");
+        this.misses = lookups(meterRegistry, "miss");
+        meterRegistry.gauge("soil.type.cache.size", detections, Cache::estimatedSize);
+    }
+
+    public Optional<String> find(ImageFingerprint fingerprint, String language) {
+        if (!enabled || fingerprint == null) {
+            return Optional.empty();
+        }
+
+        String lang = normalizeLanguage(language);
+        Detection exact = detections.getIfPresent(key(fingerprint, lang));
+        if (exact != null) {
+            exactHits.increment();
+            return Optional.of(exact.soilType());
+        }
+
+        Detection closest = null;
+        int closestDistance = Integer.MAX_VALUE;
+        if (fingerprint.dHash() != null) {
+            for (Detection candidate : detections.asMap().values()) {
+                if (!candidate.language().equals(lang)) {
+                    continue;
+                }
+                int distance = fingerprint.distanceTo(candidate.fingerprint());
+                if (distance < closestDistance) {
+                    closest = candidate;
+                    closestDistance = distance;
+                }
+            }
+        }
+        if (closest != null && closestDistance <= maxHammingDistance) {
+            similarHits.increment();
+            log.debug("Reusing soil type '{}' from a similar image ({} bits apart)", closest.soilType(), closestDistance);
+            return Optional.of(closest.soilType());
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void put(ImageFingerprint fingerprint, String language, String soilType) {
+        if (!enabled || fingerprint == null || soilType == null || soilType.isBlank()
+                || "Unknown".equalsIgnoreCase(soilType.trim())) {
+            return;
+        }
+        String lang = normalizeLanguage(language);
+        detections.put(key(fingerprint, lang), new Detection(fingerprint, lang, soilType.trim()));
+    }
+
+    private static String key(ImageFingerprint fingerprint, String language) {
+        return fingerprint.sha256() + ":" + language;
+    }
+
+    private static String normalizeLanguage(String language) {
+        return language != null && !language.isBlank() ? language.trim().toLowerCase(Locale.ROOT) : "en";
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("soil.type.cache")
+                .description("Soil-type lookups by image fingerprint")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Detection(ImageFingerprint fingerprint, String language, String soilType) {
+    }
+}
@@ -57,14 +57,14 @@ public class TextToSpeechService {
             String voiceIdToUse = voiceId != null ? voiceId : defaultVoiceId;
             String outputFormatToUse = outputFormat != null ? outputFormat : "mp3_44100_128";
 
-            String fullUrl = String.format("%s/text-to-speech/%s?output_format=%s",
-                    elevenLabsApiUrl, voiceIdToUse, outputFormatToUse);
+            // URI template keeps the voice out of the http.client.requests uri tag
+            String urlTemplate = elevenLabsApiUrl + "/text-to-speech/{voiceId}?output_format={outputFormat}";
 
             log.info("Converting text to speech - Length: {} characters, VoiceId: {}, Format: {}",
                     cleanedText.length(), voiceIdToUse, outputFormatToUse);
 
             byte[] audioBytes = webClient.post()
-                    .uri(fullUrl)
+                    .uri(urlTemplate, voiceIdToUse, outputFormatToUse)
                     .header("xi-api-key", elevenLabsApiKey)
                     .header("Content-Type", "application/json")
                     .bodyValue(requestBody)
@@ -110,13 +110,13 @@ public class TextToSpeechService {
             String voiceIdToUse = voiceId != null ? voiceId : defaultVoiceId;
             String outputFormatToUse = outputFormat != null ? outputFormat : "mp3_44100_128";
 
-            String fullUrl = String.format("%s/text-to-speech/%s?output_format=%s",
-                    elevenLabsApiUrl, voiceIdToUse, outputFormatToUse);
+            // URI template keeps the voice out of the http.client.requests uri tag
+            String urlTemplate = elevenLabsApiUrl + "/text-to-speech/{voiceId}?output_format={outputFormat}";
 
             log.info("Converting text to speech asynchronously - Length: {} characters", cleanedText.length());
 
             return webClient.post()
-                    .uri(fullUrl)
+                    .uri(urlTemplate, voiceIdToUse, outputFormatToUse)
                     .header("xi-api-key", elevenLabsApiKey)
                     .header("Content-Type", "application/json")
                     .bodyValue(requestBody)
@@ -0,0 +1,88 @@
+package com.ubaid.ai_service.service;
+
+import com.ubaid.ai_service.util.SpooledUpload;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Turns image uploads into {@link SpooledUpload}s. Uploads above {@code upload.spool.map-threshold} become
+ * memory-mapped temp files, as long as fewer than {@code upload.spool.max-mapped} are open; everything else (and
+ * everything when {@code upload.spool.enabled} is false) is a plain heap copy. Mappings outlive {@code close()}
+ * until GC, which is why they are reserved for large uploads and counted.
+ */
+@Component
+public class UploadSpooler {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long mapThreshold;
+    private final int maxMapped;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger mapped = new AtomicInteger();
+
+    public UploadSpooler(MeterRegistry meterRegistry,
+                         @Value("${upload.spool.enabled:true}") boolean enabled,
+                         @Value("${upload.spool.directory:${java.io.tmpdir}/ai-service-uploads}") Path directory,
+                         @Value("${upload.spool.map-threshold:5MB}") DataSize mapThreshold,
+                         @Value("${upload.spool.max-mapped:32}") int maxMapped) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.mapThreshold = mapThreshold.toBytes();
+        this.maxMapped = maxMapped;
+        outstanding(meterRegistry, "heap", () -> outstanding.get() - mapped.get());
+        outstanding(meterRegistry, "mapped", mapped::get);
+    }
+
+    public SpooledUpload spool(MultipartFile upload) throws IOException {
+        outstanding.incrementAndGet();
+        try {
+            if (enabled && upload.getSize() > mapThreshold && tryReserveMapping()) {
+                try {
+                    return SpooledUpload.map(upload, directory, () -> release(true));
+                } catch (IOException | RuntimeException e) {
+                    mapped.decrementAndGet();
+                    throw e;
+                }
+            }
+            return SpooledUpload.inMemory(upload, () -> release(false));
+        } catch (IOException | RuntimeException e) {
+            outstanding.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean tryReserveMapping() {
+        while (true) {
+            int current = mapped.get();
+            if (current >= maxMapped) {
+                return false;
+            }
+            if (mapped.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(boolean wasMapped) {
+        if (wasMapped) {
+            mapped.decrementAndGet();
+        }
+        outstanding.decrementAndGet();
+    }
+
+    private static void outstanding(MeterRegistry meterRegistry, String storage, Supplier<Number> value) {
+        Gauge.builder("upload.spool.outstanding", value)
+                .description("Spooled uploads not yet closed")
+                .tag("storage", storage)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ubaid.ai_service.util;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Seekable {@link javax.imageio.stream.ImageInputStream} over a {@link ByteBuffer}. ImageIO would otherwise wrap
+ * a plain InputStream in a file or memory cache, i.e. copy the whole image once more before decoding it; this reads
+ * the (possibly memory-mapped) buffer directly. The caller's buffer position is not changed.
+ */
+public class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        if (streamPos >= buffer.limit()) {
+            return -1;
+        }
+        bitOffset = 0;
+        return buffer.get((int) streamPos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (streamPos >= buffer.limit()) {
+            return len == 0 ? 0 : -1;
+        }
+        bitOffset = 0;
+        int count = (int) Math.min(len, buffer.limit() - streamPos);
+        buffer.get((int) streamPos, b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+}
@@ -0,0 +1,82 @@
+package com.ubaid.ai_service.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds Gemini {@code responseSchema} objects (OpenAPI subset) from model classes by reflection, so the
+ * schema sent upstream always matches the fields Jackson will bind the answer onto.
+ */
+public final class GeminiSchemaUtils {
+
+    private GeminiSchemaUtils() {
+    }
+
+    /**
+     * @param fieldNames the subset of declared fields the model is asked to fill, in output order;
+     *                   all of them are marked required
+     */
+    public static Map<String, Object> objectSchema(Class<?> type, String... fieldNames) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (String fieldName : fieldNames) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                properties.put(fieldName, schemaFor(field.getGenericType()));
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException(type.getSimpleName() + " has no field " + fieldName, e);
+            }
+        }
+
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "OBJECT");
+        schema.put("properties", properties);
+        schema.put("required", List.of(fieldNames));
+        schema.put("propertyOrdering", List.of(fieldNames));
+        return schema;
+    }
+
+    private static Map<String, Object> schemaFor(Type type) {
+        if (type instanceof ParameterizedType parameterized && parameterized.getRawType() == List.class) {
+            Map<String, Object> schema = new LinkedHashMap<>();
+            schema.put("type", "ARRAY");
+            schema.put("items", schemaFor(parameterized.getActualTypeArguments()[0]));
+            return schema;
+        }
+        if (type == String.class) {
+            return Map.of("type", "STRING");
+        }
+        if (type == Double.class || type == double.class || type == Float.class || type == float.class) {
+            return Map.of("type", "NUMBER");
+        }
+        if (type == Integer.class || type == int.class || type == Long.class || type == long.class) {
+            return Map.of("type", "INTEGER");
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return Map.of("type", "BOOLEAN");
+        }
+        if (type instanceof Class<?> clazz && clazz.isEnum()) {
+            List<String> values = new ArrayList<>();
+            for (Object constant : clazz.getEnumConstants()) {
+                values.add(((Enum<?>) constant).name());
+            }
+            return Map.of("type", "STRING", "format", "enum", "enum", values);
+        }
+        if (type instanceof Class<?> clazz && clazz.getPackageName().startsWith("com.ubaid.ai_service.model")) {
+            // Nested models expose every declared instance field
+            List<String> nested = new ArrayList<>();
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!field.isSynthetic() && !Modifier.isStatic(field.getModifiers())) {
+                    nested.add(field.getName());
+                }
+            }
+            return objectSchema(clazz, nested.toArray(String[]::new));
+        }
+        throw new IllegalArgumentException("Unsupported schema type: " + type.getTypeName());
+    }
+}
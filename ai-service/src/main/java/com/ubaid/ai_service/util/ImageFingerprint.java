@@ -0,0 +1,56 @@
+package com.ubaid.ai_service.util;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Identity of an uploaded image: the SHA-256 of its bytes for exact repeats, plus a 64-bit difference hash (dHash)
+ * of its pixels for near-identical re-shots and re-encodes. The dHash is null when the format cannot be decoded.
+ */
+public record ImageFingerprint(String sha256, Long dHash) {
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+
+    /**
+     * @return number of differing dHash bits, or {@link Integer#MAX_VALUE} when either side has no dHash
+     */
+    public int distanceTo(ImageFingerprint other) {
+        if (dHash == null || other.dHash == null) {
+            return Integer.MAX_VALUE;
+        }
+        return Long.bitCount(dHash ^ other.dHash);
+    }
+
+    /**
+     * Gradient hash: the image is reduced to 9x8 grey pixels and each bit records whether a pixel is brighter
+     * than its right-hand neighbour. Scaling, recompression and small exposure changes leave most bits intact.
+     */
+    public static long dHash(BufferedImage image) {
+        BufferedImage current = image;
+        // Halve first so the final 9x8 draw averages its neighbourhood instead of sampling single pixels
+        while (current.getWidth() / 2 >= HASH_WIDTH * 4 && current.getHeight() / 2 >= HASH_HEIGHT * 4) {
+            current = scale(current, current.getWidth() / 2, current.getHeight() / 2, BufferedImage.TYPE_INT_RGB);
+        }
+        BufferedImage grey = scale(current, HASH_WIDTH, HASH_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+
+        long hash = 0;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                int left = grey.getRaster().getSample(x, y, 0);
+                int right = grey.getRaster().getSample(x + 1, y, 0);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g2d = target.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return target;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ubaid.ai_service.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An uploaded file handed to downstream stages as a {@link ByteBuffer}. When spooled, the upload is moved to a
+ * temp file and memory-mapped, so its bytes live in the page cache rather than on the heap.
+ *
+ * <p>{@link #close()} deletes the file, but the JDK has no way to unmap a {@link java.nio.MappedByteBuffer}: the
+ * mapping (and on Windows the file itself, whose delete fails while mapped) is only released once the buffer and
+ * every view of it have been garbage-collected. {@code UploadSpooler} therefore maps only large uploads and bounds
+ * how many mappings it hands out.
+ */
+@Slf4j
+public final class SpooledUpload implements AutoCloseable {
+
+    private final ByteBuffer content;
+    private final Path file;
+    private final Runnable onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private SpooledUpload(ByteBuffer content, Path file, Runnable onClose) {
+        this.content = content;
+        this.file = file;
+        this.onClose = onClose;
+    }
+
+    /**
+     * @param onClose run once when the upload is closed
+     */
+    public static SpooledUpload map(MultipartFile upload, Path directory, Runnable onClose) throws IOException {
+        Files.createDirectories(directory);
+        Path file = Files.createTempFile(directory, "upload-", ".bin");
+        try {
+            // Tomcat already holds larger parts on disk; transferTo moves or streams them without a heap copy
+            upload.transferTo(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return new SpooledUpload(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file, onClose);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * @param onClose run once when the upload is closed
+     */
+    public static SpooledUpload inMemory(MultipartFile upload, Runnable onClose) throws IOException {
+        return new SpooledUpload(ByteBuffer.wrap(upload.getBytes()), null, onClose);
+    }
+
+    /**
+     * @return an independent view of the whole upload; consuming it does not affect other views
+     */
+    public ByteBuffer buffer() {
+        return content.duplicate();
+    }
+
+    public int size() {
+        return content.limit();
+    }
+
+    public boolean isMapped() {
+        return file != null;
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            // Expected on Windows while the mapping is still reachable
+            log.warn("Could not delete spooled upload {}: {}", file, e.getMessage());
+        } finally {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ubaid.ai_service.config;
+
+import com.ubaid.ai_service.model.SoilData;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SoilDataBinaryDeserializerTest {
+
+	/**
+	 * Version 1 wire format as written by the producer; its SoilDataBinarySerializerTest pins the same bytes.
+	 */
+	static final byte[] GOLDEN_V1 = HexFormat.of().parseHex(
+			"534401"                  // magic "SD", version 1
+			+ "000000054c4f414d59"    // soilType "LOAMY"
+			+ "ffffffff"              // soilImageRef null
+			+ "000000057768656174"    // cropType "wheat"
+			+ "0000000450756e65"      // location "Pune"
+			+ "000000026869"          // language "hi"
+			+ "014004000000000000"    // areaValue present, 2.5
+			+ "02"                    // areaUnit HECTARE
+			+ "01"                    // season RABI
+			+ "00000004ffd8ff00");    // soilImage, 4 bytes
+
+	private final SoilDataBinaryDeserializer deserializer = new SoilDataBinaryDeserializer();
+
+	@BeforeEach
+	void configure() {
+		// Same JSON settings as the listener's consumer factory
+		deserializer.configure(Map.of(
+				JsonDeserializer.TRUSTED_PACKAGES, "*",
+				JsonDeserializer.USE_TYPE_INFO_HEADERS, false,
+				JsonDeserializer.VALUE_DEFAULT_TYPE, SoilData.class), false);
+	}
+
+	@AfterEach
+	void close() {
+		deserializer.close();
+	}
+
+	@Test
+	void decodesGoldenBytes() {
+		SoilData soilData = deserializer.deserialize("soil-analysis-topic", GOLDEN_V1);
+
+		assertThat(soilData.getSoilType()).isEqualTo("LOAMY");
+		assertThat(soilData.getSoilImageRef()).isNull();
+		assertThat(soilData.getCropType()).isEqualTo("wheat");
+		assertThat(soilData.getLocation()).isEqualTo("Pune");
+		assertThat(soilData.getLanguage()).isEqualTo("hi");
+		assertThat(soilData.getAreaValue()).isEqualTo(2.5);
+		assertThat(soilData.getAreaUnit()).isEqualTo(SoilData.AreaUnit.HECTARE);
+		assertThat(soilData.getSeason()).isEqualTo(SoilData.Season.RABI);
+		assertThat(soilData.getSoilImage()).containsExactly(0xFF, 0xD8, 0xFF, 0x00);
+	}
+
+	@Test
+	void retrySerializerWritesTheSameBytes() {
+		SoilData soilData = deserializer.deserialize("soil-analysis-topic", GOLDEN_V1);
+
+		assertThat(new SoilDataBinarySerializer().serialize("soil-analysis-topic-retry-10000", soilData))
+				.isEqualTo(GOLDEN_V1);
+	}
+
+	@Test
+	void fallsBackToJsonWithoutMagic() {
+		byte[] json = """
+				{"soilType":"LOAMY","cropType":"wheat","location":"Pune","language":"hi",
+				 "areaValue":2.5,"areaUnit":"HECTARE","season":"RABI","soilImage":"/9j/AA=="}
+				""".getBytes(StandardCharsets.UTF_8);
+
+		SoilData soilData = deserializer.deserialize("soil-analysis-topic", json);
+
+		assertThat(soilData.getCropType()).isEqualTo("wheat");
+		assertThat(soilData.getAreaUnit()).isEqualTo(SoilData.AreaUnit.HECTARE);
+		assertThat(soilData.getSeason()).isEqualTo(SoilData.Season.RABI);
+		assertThat(soilData.getSoilImage()).containsExactly(0xFF, 0xD8, 0xFF, 0x00);
+	}
+
+	@Test
+	void rejectsUnknownVersion() {
+		byte[] record = GOLDEN_V1.clone();
+		record[2] = 2;
+
+		assertThatThrownBy(() -> deserializer.deserialize("soil-analysis-topic", record))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("version 2");
+	}
+
+	@Test
+	void rejectsTruncatedRecord() {
+		byte[] record = Arrays.copyOf(GOLDEN_V1, GOLDEN_V1.length - 2);
+
+		assertThatThrownBy(() -> deserializer.deserialize("soil-analysis-topic", record))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("Truncated");
+	}
+}
@@ -0,0 +1,86 @@
+package com.ubaid.ai_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiRateLimiterTest {
+
+	@Test
+	void grantsInteractiveWeightTimesPerBulkWaiter() {
+		GeminiRateLimiter limiter = singlePermitLimiter(4);
+
+		// Bulk arrives first; it still only gets every fifth permit while interactive callers are waiting
+		String order = grantOrder(limiter, 5, 10);
+
+		assertThat(order).isEqualTo("IIIIBIIIIBIIBBB");
+	}
+
+	@Test
+	void bulkKeepsProgressingUnderSustainedInteractiveLoad() {
+		GeminiRateLimiter limiter = singlePermitLimiter(4);
+
+		String order = grantOrder(limiter, 3, 40);
+
+		assertThat(order.substring(0, 15)).isEqualTo("IIIIBIIIIBIIIIB");
+		assertThat(order.chars().filter(c -> c == 'B').count()).isEqualTo(3);
+	}
+
+	@Test
+	void bulkWaitersRunBackToBackWhenNoInteractiveCallerWaits() {
+		GeminiRateLimiter limiter = singlePermitLimiter(4);
+
+		assertThat(grantOrder(limiter, 3, 0)).isEqualTo("BBB");
+	}
+
+	/**
+	 * One permit, a token bucket that never runs dry, and no AIMD growth, so freed permits are handed out
+	 * strictly one at a time in the queue's dequeue order.
+	 */
+	private static GeminiRateLimiter singlePermitLimiter(int interactiveWeight) {
+		return new GeminiRateLimiter(new SimpleMeterRegistry(), true, 10_000, 10_000, 1, 1, 1, 0.7,
+				Duration.ofMinutes(1), 500, Duration.ofMinutes(1), interactiveWeight);
+	}
+
+	/**
+	 * Holds the only permit while the waiters queue up, then releases it and records which lane each
+	 * subsequent call ran on.
+	 */
+	private static String grantOrder(GeminiRateLimiter limiter, int bulkWaiters, int interactiveWaiters) {
+		Sinks.Empty<Void> blocker = Sinks.empty();
+		limiter.execute(blocker::asMono).subscribe();
+
+		List<GeminiPriority> started = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < bulkWaiters; i++) {
+			enqueue(limiter, GeminiPriority.BULK, started);
+		}
+		for (int i = 0; i < interactiveWaiters; i++) {
+			enqueue(limiter, GeminiPriority.INTERACTIVE, started);
+		}
+		assertThat(limiter.isSaturated()).isTrue();
+		assertThat(started).isEmpty();
+
+		blocker.tryEmitEmpty();
+
+		assertThat(started).hasSize(bulkWaiters + interactiveWaiters);
+		assertThat(limiter.isSaturated()).isFalse();
+		return started.stream()
+				.map(lane -> lane == GeminiPriority.INTERACTIVE ? "I" : "B")
+				.collect(Collectors.joining());
+	}
+
+	private static void enqueue(GeminiRateLimiter limiter, GeminiPriority lane, List<GeminiPriority> started) {
+		limiter.execute(() -> Mono.fromRunnable(() -> started.add(lane)))
+				.contextWrite(GeminiPriority.context(lane))
+				.subscribe();
+	}
+}
@@ -0,0 +1,70 @@
+package com.ubaid.ai_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageNormalizerTest {
+
+	private final ImageNormalizer normalizer = new ImageNormalizer(true, 512, DataSize.ofMegabytes(1), 0.85f, 2, 100,
+			ObservationRegistry.NOOP, new SimpleMeterRegistry());
+
+	@AfterEach
+	void stop() {
+		normalizer.shutdown();
+	}
+
+	@Test
+	void concurrentIdenticalUploadsShareOneNormalization() throws IOException {
+		byte[] png = png();
+
+		ImageNormalizer.NormalizedImage[] results = Mono.zip(
+						normalizer.normalize(ByteBuffer.wrap(png), true),
+						normalizer.normalize(ByteBuffer.wrap(png.clone()), true))
+				.map(pair -> new ImageNormalizer.NormalizedImage[]{pair.getT1(), pair.getT2()})
+				.block();
+
+		assertThat(results[0]).isSameAs(results[1]);
+		assertThat(results[0].reencoded()).isTrue();
+		assertThat(results[0].fingerprint().dHash()).isNotNull();
+	}
+
+	@Test
+	void laterUploadIsNormalizedAgain() throws IOException {
+		byte[] png = png();
+
+		ImageNormalizer.NormalizedImage first = normalizer.normalize(ByteBuffer.wrap(png), true).block();
+		ImageNormalizer.NormalizedImage second = normalizer.normalize(ByteBuffer.wrap(png), true).block();
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.fingerprint()).isEqualTo(first.fingerprint());
+	}
+
+	// Large enough that decoding takes far longer than hashing, so the second caller joins the first
+	private static byte[] png() throws IOException {
+		Random random = new Random(7);
+		BufferedImage image = new BufferedImage(3000, 2000, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		for (int i = 0; i < 400; i++) {
+			g2d.setColor(new Color(random.nextInt(0xFFFFFF)));
+			g2d.fillOval(random.nextInt(3000), random.nextInt(2000), 20 + random.nextInt(300), 20 + random.nextInt(300));
+		}
+		g2d.dispose();
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", png);
+		return png.toByteArray();
+	}
+}
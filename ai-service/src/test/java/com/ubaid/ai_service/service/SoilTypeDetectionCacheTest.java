@@ -0,0 +1,80 @@
+package com.ubaid.ai_service.service;
+
+import com.ubaid.ai_service.util.ImageFingerprint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SoilTypeDetectionCacheTest {
+
+	private static final long DHASH = 0x0F0F_3C3C_A5A5_FF00L;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final SoilTypeDetectionCache cache = new SoilTypeDetectionCache(meterRegistry, true, 100, Duration.ofHours(1), 6);
+
+	@Test
+	void exactRepeatReusesDetection() {
+		cache.put(new ImageFingerprint("sha-1", DHASH), "en", " Black Soil ");
+
+		assertThat(cache.find(new ImageFingerprint("sha-1", DHASH), "en")).contains("Black Soil");
+		assertThat(lookups("exact")).isEqualTo(1);
+	}
+
+	@Test
+	void nearIdenticalImageReusesClosestDetection() {
+		cache.put(new ImageFingerprint("sha-1", DHASH), "en", "Black Soil");
+		cache.put(new ImageFingerprint("sha-2", DHASH ^ 0xFFFF_0000_0000_0000L), "en", "Red Soil");
+
+		// 6 bits away from the first entry: the configured maximum
+		assertThat(cache.find(new ImageFingerprint("sha-3", DHASH ^ 0b111111L), "en")).contains("Black Soil");
+		assertThat(lookups("similar")).isEqualTo(1);
+	}
+
+	@Test
+	void imageBeyondMaxDistanceMisses() {
+		cache.put(new ImageFingerprint("sha-1", DHASH), "en", "Black Soil");
+
+		assertThat(cache.find(new ImageFingerprint("sha-3", DHASH ^ 0b1111111L), "en")).isEmpty();
+		assertThat(lookups("miss")).isEqualTo(1);
+	}
+
+	@Test
+	void detectionIsOnlyReusedInItsLanguage() {
+		cache.put(new ImageFingerprint("sha-1", DHASH), "hi", "काली मिट्टी");
+
+		assertThat(cache.find(new ImageFingerprint("sha-1", DHASH), "en")).isEmpty();
+		assertThat(cache.find(new ImageFingerprint("sha-3", DHASH ^ 1L), "en")).isEmpty();
+		assertThat(cache.find(new ImageFingerprint("sha-1", DHASH), " HI ")).contains("काली मिट्टी");
+	}
+
+	@Test
+	void undecodableImageOnlyMatchesExactly() {
+		cache.put(new ImageFingerprint("sha-1", null), "en", "Sandy");
+
+		assertThat(cache.find(new ImageFingerprint("sha-1", null), "en")).contains("Sandy");
+		assertThat(cache.find(new ImageFingerprint("sha-2", null), "en")).isEmpty();
+	}
+
+	@Test
+	void unknownSoilTypeIsNotRemembered() {
+		cache.put(new ImageFingerprint("sha-1", DHASH), "en", "Unknown");
+		cache.put(new ImageFingerprint("sha-2", DHASH), "en", " ");
+
+		assertThat(cache.find(new ImageFingerprint("sha-1", DHASH), "en")).isEmpty();
+	}
+
+	@Test
+	void disabledCacheNeverMatches() {
+		SoilTypeDetectionCache disabled = new SoilTypeDetectionCache(new SimpleMeterRegistry(), false, 100, Duration.ofHours(1), 6);
+		disabled.put(new ImageFingerprint("sha-1", DHASH), "en", "Black Soil");
+
+		assertThat(disabled.find(new ImageFingerprint("sha-1", DHASH), "en")).isEmpty();
+	}
+
+	private double lookups(String result) {
+		return meterRegistry.get("soil.type.cache").tag("result", result).counter().count();
+	}
+}
@@ -0,0 +1,83 @@
+package com.ubaid.ai_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageFingerprintTest {
+
+	@Test
+	void sameImageHashesIdentically() {
+		assertThat(ImageFingerprint.dHash(soilPhoto(7))).isEqualTo(ImageFingerprint.dHash(soilPhoto(7)));
+	}
+
+	@Test
+	void rescaledAndRecompressedImageStaysWithinDefaultDistance() throws IOException {
+		BufferedImage original = soilPhoto(7);
+		BufferedImage reshot = jpegRoundTrip(scale(original, 480, 360));
+
+		int distance = fingerprint(original).distanceTo(fingerprint(reshot));
+
+		assertThat(distance).isLessThanOrEqualTo(6);
+	}
+
+	@Test
+	void differentImagesAreFarApart() {
+		int distance = fingerprint(soilPhoto(7)).distanceTo(fingerprint(soilPhoto(8)));
+
+		assertThat(distance).isGreaterThan(16);
+	}
+
+	@Test
+	void distanceIsUnknownWithoutDHash() {
+		ImageFingerprint undecodable = new ImageFingerprint("abc", null);
+
+		assertThat(undecodable.distanceTo(fingerprint(soilPhoto(7)))).isEqualTo(Integer.MAX_VALUE);
+		assertThat(fingerprint(soilPhoto(7)).distanceTo(undecodable)).isEqualTo(Integer.MAX_VALUE);
+	}
+
+	private static ImageFingerprint fingerprint(BufferedImage image) {
+		return new ImageFingerprint("sha", ImageFingerprint.dHash(image));
+	}
+
+	/**
+	 * A 1024x768 stand-in for a soil photo: brown background with randomly placed, randomly shaded clods.
+	 */
+	static BufferedImage soilPhoto(long seed) {
+		Random random = new Random(seed);
+		BufferedImage image = new BufferedImage(1024, 768, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		g2d.setColor(new Color(110, 80, 50));
+		g2d.fillRect(0, 0, 1024, 768);
+		for (int i = 0; i < 60; i++) {
+			int shade = 40 + random.nextInt(140);
+			g2d.setColor(new Color(shade, shade * 3 / 4, shade / 2));
+			g2d.fillOval(random.nextInt(1024) - 100, random.nextInt(768) - 100, 60 + random.nextInt(240), 60 + random.nextInt(240));
+		}
+		g2d.dispose();
+		return image;
+	}
+
+	private static BufferedImage scale(BufferedImage source, int width, int height) {
+		BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = target.createGraphics();
+		g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2d.drawImage(source, 0, 0, width, height, null);
+		g2d.dispose();
+		return target;
+	}
+
+	private static BufferedImage jpegRoundTrip(BufferedImage image) throws IOException {
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpg", jpeg);
+		return ImageIO.read(new ByteArrayInputStream(jpeg.toByteArray()));
+	}
+}
@@ -0,0 +1,52 @@
+package com.ai.producer.config;
+
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Local span export for environments without an OTLP collector: the OpenTelemetry SDK's OTLP/JSON exporter with
+ * its logger routed to a file, one export batch per line (replayable into a collector via its otlpjsonfile
+ * receiver). Registered alongside the OTLP exporter; Spring Boot batches spans for every {@link SpanExporter} bean.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "tracing.file-exporter.enabled", havingValue = "true")
+public class FileSpanExporterConfig {
+
+    // Held for the lifetime of the context: JUL only keeps weak references to configured loggers
+    private final Logger spanLogger = Logger.getLogger(OtlpJsonLoggingSpanExporter.class.getName());
+
+    @Bean
+    public SpanExporter fileSpanExporter(@Value("${tracing.file-exporter.path}") Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileHandler file = new FileHandler(path.toString(), true);
+        file.setEncoding("UTF-8");
+        file.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return record.getMessage() + System.lineSeparator();
+            }
+        });
+        spanLogger.setLevel(Level.INFO);
+        spanLogger.setUseParentHandlers(false);
+        spanLogger.addHandler(file);
+        log.info("Writing trace spans to {}", path.toAbsolutePath());
+        return OtlpJsonLoggingSpanExporter.create();
+    }
+}
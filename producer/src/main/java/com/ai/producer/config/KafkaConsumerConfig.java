@@ -0,0 +1,67 @@
+package com.ai.producer.config;
+
+import com.ai.producer.entity.FertilizerRecommendation;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    // Stable per instance (defaults to the host name) so restarts reuse one group instead of orphaning a new one
+    @Value("${soil-analysis.results.instance-id:}")
+    private String instanceId;
+
+    @Bean
+    public ConsumerFactory<String, FertilizerRecommendation> recommendationConsumerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        // One group per instance: each instance reads every partition and replays the retained results into its
+        // own store (RecommendationListener seeks to the beginning on assignment)
+        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, "producer-results-" + resolveInstanceId());
+        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        // A record that cannot be deserialized is handed to the container's error handler, which logs and skips
+        // it, instead of failing every poll and stalling the partition
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        configProps.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
+        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        configProps.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+        configProps.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        configProps.put(JsonDeserializer.VALUE_DEFAULT_TYPE, FertilizerRecommendation.class);
+        return new DefaultKafkaConsumerFactory<>(configProps);
+    }
+
+    private String resolveInstanceId() {
+        if (instanceId != null && !instanceId.isBlank()) {
+            return instanceId.trim();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "local";
+        }
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, FertilizerRecommendation> recommendationListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, FertilizerRecommendation> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(recommendationConsumerFactory());
+        return factory;
+    }
+}
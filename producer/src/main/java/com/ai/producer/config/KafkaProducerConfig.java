@@ -1,39 +1,122 @@
 package com.ai.producer.config;
 
 import com.ai.producer.entity.SoilData;
+import com.ai.producer.kafka.SoilDataBinarySerializer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTopicSerializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @Configuration
 @EnableKafka
 public class KafkaProducerConfig {
 
+    // Topics listed here carry SoilData in the compact binary encoding; all others stay JSON
+    @Value("${kafka.serde.binary-topics:soil-analysis-topic,soil-analysis-priority-topic}")
+    private List<String> binaryTopics;
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${kafka.producer.linger-ms:10}")
+    private int lingerMs;
+
+    @Value("${kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    // How long send() may block for buffer space or metadata before the request is rejected with 503
+    @Value("${kafka.producer.max-block-ms:250}")
+    private long maxBlockMs;
+
+    @Value("${kafka.producer.buffer-memory:67108864}")
+    private long bufferMemory;
+
+    @Value("${kafka.producer.request-timeout-ms:30000}")
+    private int requestTimeoutMs;
+
+    // Upper bound on a record's retries before its send future fails and the request is marked FAILED
+    @Value("${kafka.producer.delivery-timeout-ms:120000}")
+    private int deliveryTimeoutMs;
+
+    // Adds a producer span per send and propagates the trace context to ai-service in the record headers
+    @Value("${kafka.observation.enabled:true}")
+    private boolean observationEnabled;
+
+    // Form uploads hand off from the CPU-sized compression pool to this one for the blocking part of a submission
+    // (blob write, idempotency SET NX, send() waiting up to max-block-ms)
+    @Value("${soil-analysis.submit-executor.threads:16}")
+    private int submitThreads;
+
+    @Value("${soil-analysis.submit-executor.queue-capacity:64}")
+    private int submitQueueCapacity;
+
+    @Bean
+    public ThreadPoolTaskExecutor soilAnalysisSubmitExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(submitThreads);
+        executor.setMaxPoolSize(submitThreads);
+        executor.setQueueCapacity(submitQueueCapacity);
+        executor.setThreadNamePrefix("soil-analysis-submit-");
+        executor.setDaemon(true);
+        // Keeps the upload's trace context so the producer span stays in the request's trace
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        return executor;
+    }
+
     @Bean
     public ProducerFactory<String, SoilData> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1);
+        // Idempotence keeps per-partition ordering and no duplicates with up to 5 pipelined requests
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        configProps.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+        configProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, requestTimeoutMs);
+        // The client refuses to start unless delivery.timeout.ms >= linger.ms + request.timeout.ms
+        configProps.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, Math.max(deliveryTimeoutMs, lingerMs + requestTimeoutMs));
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
+        configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
         // Disable type headers for simpler JSON
         configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Serializer<SoilData> valueSerializer() {
+        Map<Pattern, Serializer<?>> delegates = new HashMap<>();
+        for (String topic : binaryTopics) {
+            delegates.put(Pattern.compile(Pattern.quote(topic.trim())), new SoilDataBinarySerializer());
+        }
+        return (Serializer<SoilData>) (Serializer<?>) new DelegatingByTopicSerializer(delegates, new JsonSerializer<>());
     }
 
     @Bean
     public KafkaTemplate<String, SoilData> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+        KafkaTemplate<String, SoilData> template = new KafkaTemplate<>(producerFactory());
+        template.setObservationEnabled(observationEnabled);
+        return template;
     }
 }
@@ -12,6 +12,12 @@ public class KafkaTopicConfig {
         return new NewTopic("soil-analysis-topic", 3, (short) 1);
     }
 
+    // Interactive lane; consumed ahead of bulk traffic by ai-service
+    @Bean
+    public NewTopic soilAnalysisPriorityTopic() {
+        return new NewTopic("soil-analysis-priority-topic", 3, (short) 1);
+    }
+
 //    @Bean
 //    public NewTopic fertilizerRecommendationTopic() {
 //        return new NewTopic("fertilizer-recommendation-topic", 3, (short) 1);
@@ -0,0 +1,17 @@
+package com.ai.producer.entity;
+
+import lombok.*;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class FertilizerDetail {
+    private String name;
+    private String company;
+    private String quantity; // e.g., "50 kg", "25 bags"
+    private String applicationMethod;
+    private String npkRatio; // e.g., "20:20:20"
+}
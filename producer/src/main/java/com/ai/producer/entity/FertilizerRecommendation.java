@@ -0,0 +1,30 @@
+package com.ai.producer.entity;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Shape published by ai-service on fertilizer-recommendation-topic
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class FertilizerRecommendation {
+
+    private String requestId; // Key of the originating soil-analysis record
+    private String detectedSoilType;
+    private String cropType;
+    private Double areaValue;
+    private String areaUnit;
+    private String season;
+    private String language;
+    private String generalRecommendation;
+    private List<FertilizerDetail> fertilizers;
+    private List<String> applicationTips;
+    private List<String> seasonalAdvice;
+    private List<String> pesticideRecommendation;
+    private LocalDateTime createdAt;
+}
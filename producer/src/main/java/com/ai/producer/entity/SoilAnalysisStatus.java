@@ -0,0 +1,25 @@
+package com.ai.producer.entity;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class SoilAnalysisStatus {
+
+    public enum Status {
+        PENDING, COMPLETED, FAILED
+    }
+
+    private String requestId;
+    private Status status;
+    private LocalDateTime submittedAt; // Only known on the instance that accepted the request
+    private LocalDateTime completedAt;
+    private FertilizerRecommendation recommendation;
+    private String error; // Set when the request never reached Kafka
+}
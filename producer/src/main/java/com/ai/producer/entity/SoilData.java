@@ -14,6 +14,7 @@ public class SoilData {
 
     private String soilType; // Optional: User can provide soil type (clay, sandy, loamy, etc.)
     private byte[] soilImage; // Optional: Store image as byte array for soil type detection
+    private String soilImageRef; // Optional: claim-check reference (SHA-256) to the image in the blob store
     private Double areaValue; // numeric value
     private AreaUnit areaUnit; // acre, bigha, hectare
     private String cropType; // wheat, rice, corn, etc.
@@ -35,18 +36,23 @@ public class SoilData {
 
     // Helper method to check if soil analysis is possible
     public boolean canAnalyzeSoil() {
-        return soilType != null || soilImage != null;
+        return soilType != null || hasImage();
     }
 
     // Helper method to get soil type source
     public String getSoilTypeSource() {
-        if (soilType != null && soilImage != null) {
+        if (soilType != null && hasImage()) {
             return "PROVIDED_AND_IMAGE";
         } else if (soilType != null) {
             return "PROVIDED";
-        } else if (soilImage != null) {
+        } else if (hasImage()) {
             return "IMAGE_ANALYSIS";
         }
         return "NONE";
     }
-}
\ No newline at end of file
+
+    // Image may travel inline or be offloaded to the blob store
+    private boolean hasImage() {
+        return soilImage != null || soilImageRef != null;
+    }
+}
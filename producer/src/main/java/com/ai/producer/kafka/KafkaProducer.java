@@ -1,14 +1,38 @@
 package com.ai.producer.kafka;
 
+import com.ai.producer.entity.SoilAnalysisStatus;
 import com.ai.producer.entity.SoilData;
-import com.ai.producer.util.ImageCompressionUtil;
+import com.ai.producer.storage.BlobStore;
+import com.ai.producer.storage.IdempotencyStore;
+import com.ai.producer.storage.SoilAnalysisResultStore;
+import com.ai.producer.util.HashUtils;
+import com.ai.producer.util.ImageCompressionExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/producer")
@@ -16,17 +40,86 @@ import java.io.IOException;
 @CrossOrigin(origins = "*")
 public class KafkaProducer {
 
+    private static final String SOIL_ANALYSIS_TOPIC = "soil-analysis-topic";
+    private static final String SOIL_ANALYSIS_PRIORITY_TOPIC = "soil-analysis-priority-topic";
+    // interactive | bulk; callers doing batch uploads should send bulk
+    private static final String LANE_HEADER = "X-Soil-Analysis-Lane";
+    private static final String REQUEST_ID_HEADER = "X-Request-Id";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final KafkaTemplate<String, SoilData> kafkaTemplate;
-    private final ImageCompressionUtil imageCompressionUtil;
+    private final ImageCompressionExecutor imageCompressionExecutor;
+    private final Executor submitExecutor;
+    private final BlobStore blobStore;
+    private final SoilAnalysisResultStore resultStore;
+    private final IdempotencyStore idempotencyStore;
+    private final MeterRegistry meterRegistry;
+    private final Timer sendLatency;
+    private final Timer uploadReadTime;
+    private final Timer submitTime;
+
+    @Value("${soil-analysis.claim-check.enabled:true}")
+    private boolean claimCheckEnabled;
+
+    // The lane header is self-declared, so the default comes from the endpoint: the app's form upload is
+    // interactive, the JSON API (integrations, batch imports) is bulk unless it explicitly asks otherwise
+    @Value("${soil-analysis.lanes.form-default:interactive}")
+    private String formDefaultLane;
+
+    @Value("${soil-analysis.lanes.api-default:bulk}")
+    private String apiDefaultLane;
+
+    @Value("${soil-analysis.idempotency.enabled:true}")
+    private boolean idempotencyEnabled;
+
+    @Value("${soil-analysis.idempotency.window:10m}")
+    private Duration idempotencyWindow;
+
+    // Requests carry no caller identity, so equal content from two farmers would share one request ID
+    @Value("${soil-analysis.idempotency.content-dedupe.enabled:false}")
+    private boolean contentDedupeEnabled;
+
+    @Value("${upload.spool.enabled:true}")
+    private boolean spoolUploads;
+
+    @Value("${upload.spool.directory:${java.io.tmpdir}/producer-uploads}")
+    private Path spoolDirectory;
 
     public KafkaProducer(KafkaTemplate<String, SoilData> kafkaTemplate,
-                         ImageCompressionUtil imageCompressionUtil) {
+                         ImageCompressionExecutor imageCompressionExecutor,
+                         @Qualifier("soilAnalysisSubmitExecutor") Executor submitExecutor,
+                         BlobStore blobStore,
+                         SoilAnalysisResultStore resultStore,
+                         IdempotencyStore idempotencyStore,
+                         MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
-        this.imageCompressionUtil = imageCompressionUtil;
+        this.imageCompressionExecutor = imageCompressionExecutor;
+        this.submitExecutor = submitExecutor;
+        this.blobStore = blobStore;
+        this.resultStore = resultStore;
+        this.idempotencyStore = idempotencyStore;
+        this.meterRegistry = meterRegistry;
+        this.sendLatency = Timer.builder("soil.analysis.send.latency")
+                .description("Time from send() to broker acknowledgement")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        // Same meter as the compression pool's queue/compress stages
+        this.uploadReadTime = Timer.builder("soil.analysis.upload.stage")
+                .description("Time spent per stage of a soil analysis upload")
+                .tag("stage", "read")
+                .register(meterRegistry);
+        this.submitTime = Timer.builder("soil.analysis.upload.stage")
+                .description("Time spent per stage of a soil analysis upload")
+                .tag("stage", "submit")
+                .register(meterRegistry);
     }
 
     @PostMapping("/soil-analysis")
-    public ResponseEntity<String> sendSoilDataForAnalysis(@RequestBody SoilData soilData) {
+    public ResponseEntity<String> sendSoilDataForAnalysis(
+            @RequestBody SoilData soilData,
+            @RequestHeader(value = LANE_HEADER, required = false) String lane,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         try {
             // Validate required fields
             if (soilData.getCropType() == null || soilData.getAreaValue() == null ||
@@ -36,13 +129,21 @@ public class KafkaProducer {
                         .body("Error: All required fields must be provided (cropType, areaValue, areaUnit, season, language)");
             }
 
+            int imageSize = soilData.getSoilImage() != null ? soilData.getSoilImage().length : 0;
+            applyClaimCheck(soilData);
+
             // No longer requiring soilType or soilImage - AI can provide general recommendations
-            kafkaTemplate.send("soil-analysis-topic", soilData);
-            log.info("Sent soil data for analysis: CropType={}, Language={}, SoilTypeSource={}, ImageSize={} bytes",
-                    soilData.getCropType(), soilData.getLanguage(), soilData.getSoilTypeSource(),
-                    soilData.getSoilImage() != null ? soilData.getSoilImage().length : 0);
+            Submission submission = submit(soilData, lane, apiDefaultLane, idempotencyKey);
+            String requestId = submission.requestId();
+            log.info("Sent soil data for analysis: RequestId={}, CropType={}, Language={}, SoilTypeSource={}, ImageSize={} bytes, ImageRef={}, Duplicate={}",
+                    requestId, soilData.getCropType(), soilData.getLanguage(), soilData.getSoilTypeSource(),
+                    imageSize, soilData.getSoilImageRef(), submission.duplicate());
 
-            return ResponseEntity.ok("Soil analysis request sent successfully for crop: " + soilData.getCropType());
+            return accepted(submission)
+                    .body("Soil analysis request accepted for crop: " + soilData.getCropType() +
+                            ". Request ID: " + requestId);
+        } catch (SoilAnalysisRejectedException e) {
+            return rejected(e);
         } catch (Exception e) {
             log.error("Error sending soil data to Kafka", e);
             return ResponseEntity.internalServerError()
@@ -51,7 +152,7 @@ public class KafkaProducer {
     }
 
     @PostMapping(value = "/soil-analysis-form", consumes = {"multipart/form-data"})
-    public ResponseEntity<String> sendSoilDataWithForm(
+    public CompletableFuture<ResponseEntity<String>> sendSoilDataWithForm(
             @RequestParam("cropType") String cropType,
             @RequestParam("areaValue") Double areaValue,
             @RequestParam("areaUnit") String areaUnit,
@@ -59,7 +160,9 @@ public class KafkaProducer {
             @RequestParam("language") String language,
             @RequestParam(value = "location", required = false) String location,
             @RequestParam(value = "soilType", required = false) String soilType,
-            @RequestParam(value = "soilImage", required = false) MultipartFile soilImage) {
+            @RequestParam(value = "soilImage", required = false) MultipartFile soilImage,
+            @RequestHeader(value = LANE_HEADER, required = false) String lane,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
 
         try {
             // Validate required fields
@@ -68,22 +171,22 @@ public class KafkaProducer {
                     season == null || season.trim().isEmpty() ||
                     language == null || language.trim().isEmpty()) {
 
-                return ResponseEntity.badRequest()
-                        .body("Error: All required fields must be provided (cropType, areaValue, areaUnit, season, language)");
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                        .body("Error: All required fields must be provided (cropType, areaValue, areaUnit, season, language)"));
             }
 
             // Validate soilImage if provided
             if (soilImage != null && !soilImage.isEmpty()) {
                 String contentType = soilImage.getContentType();
                 if (contentType == null || (!contentType.startsWith("image/"))) {
-                    return ResponseEntity.badRequest()
-                            .body("Error: soilImage must be a valid image file (JPEG, PNG, etc.)");
+                    return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                            .body("Error: soilImage must be a valid image file (JPEG, PNG, etc.)"));
                 }
 
                 // Validate file size (max 5MB before compression)
                 if (soilImage.getSize() > 5 * 1024 * 1024) {
-                    return ResponseEntity.badRequest()
-                            .body("Error: Image size must be less than 5MB");
+                    return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                            .body("Error: Image size must be less than 5MB"));
                 }
             }
 
@@ -94,8 +197,8 @@ public class KafkaProducer {
                     String cleanSoilType = soilType.toUpperCase().trim().replace(" ", "_");
                     SoilData.SoilType.valueOf(cleanSoilType);
                 } catch (IllegalArgumentException e) {
-                    return ResponseEntity.badRequest()
-                            .body("Invalid soil type. Valid types: CLAY, SANDY, LOAMY, SILT, RED_SOIL, BLACK_SOIL, ALLUVIAL, LATERITE, MOUNTAIN_SOIL, DESERT_SOIL");
+                    return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                            .body("Invalid soil type. Valid types: CLAY, SANDY, LOAMY, SILT, RED_SOIL, BLACK_SOIL, ALLUVIAL, LATERITE, MOUNTAIN_SOIL, DESERT_SOIL"));
                 }
             }
 
@@ -115,49 +218,275 @@ public class KafkaProducer {
                 soilData.setAreaUnit(SoilData.AreaUnit.valueOf(areaUnit.toUpperCase().trim()));
                 soilData.setSeason(SoilData.Season.valueOf(season.toUpperCase().trim()));
             } catch (IllegalArgumentException e) {
-                return ResponseEntity.badRequest()
-                        .body("Invalid area unit or season. Valid areaUnit: ACRE, BIGHA, HECTARE. Valid season: KHARIF, RABI, SUMMER");
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                        .body("Invalid area unit or season. Valid areaUnit: ACRE, BIGHA, HECTARE. Valid season: KHARIF, RABI, SUMMER"));
             }
 
-            // Process and compress image if provided
-            if (soilImage != null && !soilImage.isEmpty()) {
-                try {
-                    byte[] originalImageBytes = soilImage.getBytes();
-                    byte[] compressedImageBytes = imageCompressionUtil.compressImage(originalImageBytes);
-                    soilData.setSoilImage(compressedImageBytes);
-
-                    log.info("Image processed - Original: {} KB, Compressed: {} KB, Filename: {}",
-                            originalImageBytes.length / 1024,
-                            compressedImageBytes.length / 1024,
-                            soilImage.getOriginalFilename());
-
-                } catch (IOException e) {
-                    log.error("Error processing/compressing soil image", e);
-                    return ResponseEntity.badRequest()
-                            .body("Error processing soil image: " + e.getMessage());
-                }
+            // Only the upload is staged here; compression and the Kafka send run on their own pools
+            if (soilImage == null || soilImage.isEmpty()) {
+                return CompletableFuture.completedFuture(submitForm(soilData, lane, idempotencyKey));
+            }
+            long readStartNanos = System.nanoTime();
+            long originalSize = soilImage.getSize();
+            String filename = soilImage.getOriginalFilename();
+            CompletableFuture<byte[]> compression;
+            if (spoolUploads) {
+                // Decoded from the temp file on the pool; the upload is never copied onto the heap
+                Path spooledImage = spool(soilImage);
+                uploadReadTime.record(System.nanoTime() - readStartNanos, TimeUnit.NANOSECONDS);
+                compression = imageCompressionExecutor.compress(spooledImage);
+            } else {
+                byte[] originalImageBytes = soilImage.getBytes();
+                uploadReadTime.record(System.nanoTime() - readStartNanos, TimeUnit.NANOSECONDS);
+                compression = imageCompressionExecutor.compress(originalImageBytes);
             }
 
+            // Compression threads stay CPU-only: the submission (blob write, Redis, Kafka send) runs on its own pool
+            return compression
+                    .thenApplyAsync(compressedImageBytes -> {
+                        soilData.setSoilImage(compressedImageBytes);
+
+                        log.info("Image processed - Original: {} KB, Compressed: {} KB, Filename: {}",
+                                originalSize / 1024,
+                                compressedImageBytes.length / 1024,
+                                filename);
+
+                        return submitForm(soilData, lane, idempotencyKey);
+                    }, submitExecutor)
+                    .exceptionally(this::formUploadFailed);
+
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(
+                    rejected(new SoilAnalysisRejectedException("Image compression pool is saturated", e)));
+        } catch (Exception e) {
+            log.error("Error sending soil data to Kafka", e);
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError()
+                    .body("Failed to send soil analysis request: " + e.getMessage()));
+        }
+    }
+
+    // Only an image that cannot be decoded is the client's fault; anything else is ours
+    private ResponseEntity<String> formUploadFailed(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof IOException) {
+            log.warn("Rejecting undecodable soil image: {}", cause.getMessage());
+            return ResponseEntity.badRequest()
+                    .body("Error processing soil image: " + cause.getMessage());
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return rejected(new SoilAnalysisRejectedException("Soil analysis submit pool is saturated", cause));
+        }
+        log.error("Error processing soil analysis form upload", cause);
+        return ResponseEntity.internalServerError()
+                .body("Failed to send soil analysis request: " + cause.getMessage());
+    }
+
+    // Tomcat already holds larger parts on disk; transferTo moves or streams them rather than buffering in memory
+    private Path spool(MultipartFile upload) throws IOException {
+        Files.createDirectories(spoolDirectory);
+        Path file = Files.createTempFile(spoolDirectory, "upload-", ".bin");
+        try {
+            upload.transferTo(file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private ResponseEntity<String> submitForm(SoilData soilData, String lane, String idempotencyKey) {
+        long submitStartNanos = System.nanoTime();
+        try {
+            applyClaimCheck(soilData);
+
             // Send to Kafka
-            kafkaTemplate.send("soil-analysis-topic", soilData);
+            Submission submission = submit(soilData, lane, formDefaultLane, idempotencyKey);
+            String requestId = submission.requestId();
 
             String analysisMethod = soilData.getSoilTypeSource();
-            log.info("Sent soil data for analysis: CropType={}, Language={}, Season={}, AnalysisMethod={}",
-                    cropType, language, season, analysisMethod);
+            log.info("Sent soil data for analysis: RequestId={}, CropType={}, Language={}, Season={}, AnalysisMethod={}, Duplicate={}",
+                    requestId, soilData.getCropType(), soilData.getLanguage(), soilData.getSeason(), analysisMethod,
+                    submission.duplicate());
 
             String responseMessage = String.format(
-                    "Soil analysis request sent successfully for crop: %s in %s language. Analysis method: %s",
-                    cropType, language, getAnalysisMethodDescription(analysisMethod));
+                    "Soil analysis request accepted for crop: %s in %s language. Analysis method: %s. Request ID: %s",
+                    soilData.getCropType(), soilData.getLanguage(), getAnalysisMethodDescription(analysisMethod), requestId);
 
-            return ResponseEntity.ok(responseMessage);
+            return accepted(submission)
+                    .body(responseMessage);
 
+        } catch (SoilAnalysisRejectedException e) {
+            return rejected(e);
         } catch (Exception e) {
             log.error("Error sending soil data to Kafka", e);
             return ResponseEntity.internalServerError()
                     .body("Failed to send soil analysis request: " + e.getMessage());
+        } finally {
+            submitTime.record(System.nanoTime() - submitStartNanos, TimeUnit.NANOSECONDS);
         }
     }
 
+    @GetMapping("/soil-analysis/{id}")
+    public ResponseEntity<SoilAnalysisStatus> getSoilAnalysis(@PathVariable("id") String requestId) {
+        return resultStore.find(requestId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Hands the record to the producer without waiting for the broker. The request ID is the record key;
+     * ai-service publishes the result under the same key. Delivery is observed through the send future: a
+     * future that is already failed means the producer could not take the record within max.block.ms, which
+     * is rejected right away, while later failures mark the request FAILED in the result store.
+     * <p>
+     * A submission whose idempotency key was already accepted inside the dedupe window is not sent again;
+     * the caller gets the original request ID. Keys of records that never reached Kafka are released so the
+     * client can retry.
+     */
+    private Submission submit(SoilData soilData, String lane, String defaultLane, String idempotencyKeyHeader) {
+        String requestId = UUID.randomUUID().toString();
+        String dedupeKey = idempotencyEnabled ? dedupeKey(idempotencyKeyHeader, soilData) : null;
+        if (dedupeKey != null) {
+            String originalRequestId = idempotencyStore.putIfAbsent(dedupeKey, requestId, idempotencyWindow);
+            idempotencyCounter(originalRequestId != null ? "hit" : "miss").increment();
+            if (originalRequestId != null) {
+                log.info("Duplicate soil analysis submission, returning original request {}", originalRequestId);
+                return new Submission(originalRequestId, true);
+            }
+        }
+
+        String topic = topicForLane(lane, defaultLane);
+        resultStore.markPending(requestId);
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<SendResult<String, SoilData>> future;
+        try {
+            future = kafkaTemplate.send(topic, requestId, soilData);
+        } catch (RuntimeException e) {
+            // Producer creation or serialization failed before the record was handed over
+            resultStore.remove(requestId);
+            releaseDedupeKey(dedupeKey, requestId);
+            sendCounter(topic, "rejected").increment();
+            throw e;
+        }
+        if (future.isCompletedExceptionally()) {
+            resultStore.remove(requestId);
+            releaseDedupeKey(dedupeKey, requestId);
+            sendCounter(topic, "rejected").increment();
+            throw new SoilAnalysisRejectedException("Kafka producer is not accepting records",
+                    future.handle((result, ex) -> ex).join());
+        }
+
+        future.whenComplete((result, ex) -> {
+            sendLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (ex != null) {
+                sendCounter(topic, "failure").increment();
+                resultStore.markFailed(requestId, "Delivery to Kafka failed: " + ex.getMessage());
+                releaseDedupeKey(dedupeKey, requestId);
+                log.error("Failed to deliver soil analysis request {} to {}", requestId, topic, ex);
+            } else {
+                sendCounter(topic, "success").increment();
+                log.debug("Delivered soil analysis request {} to {}-{}@{}", requestId, topic,
+                        result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+            }
+        });
+        return new Submission(requestId, false);
+    }
+
+    /**
+     * Client-supplied keys are used verbatim. Without one, requests are only deduplicated when content dedupe
+     * is enabled: the key is then a hash of the normalized request fields plus the image identity (claim-check
+     * reference, or the image hash when claim-check is off), so a double-tapped submit or a client retry maps
+     * onto the same Gemini call. Only enable that where a deployment serves a single caller.
+     *
+     * @return null when the submission is not deduplicated
+     */
+    private String dedupeKey(String idempotencyKeyHeader, SoilData soilData) {
+        if (idempotencyKeyHeader != null && !idempotencyKeyHeader.isBlank()) {
+            return "key:" + idempotencyKeyHeader.trim();
+        }
+        if (!contentDedupeEnabled) {
+            return null;
+        }
+        String image = soilData.getSoilImageRef() != null ? soilData.getSoilImageRef()
+                : soilData.getSoilImage() != null && soilData.getSoilImage().length > 0
+                ? HashUtils.sha256Hex(soilData.getSoilImage()) : "";
+        String content = String.join("|",
+                normalize(soilData.getCropType()),
+                String.format(Locale.ROOT, "%.2f", soilData.getAreaValue()),
+                String.valueOf(soilData.getAreaUnit()),
+                String.valueOf(soilData.getSeason()),
+                normalize(soilData.getLanguage()),
+                normalize(soilData.getLocation()),
+                normalize(soilData.getSoilType()),
+                image);
+        return "content:" + HashUtils.sha256Hex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String normalize(String value) {
+        return value != null ? value.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private void releaseDedupeKey(String dedupeKey, String requestId) {
+        if (dedupeKey != null) {
+            idempotencyStore.remove(dedupeKey, requestId);
+        }
+    }
+
+    private Counter idempotencyCounter(String result) {
+        return Counter.builder("soil.analysis.idempotency")
+                .description("Soil analysis submissions checked against the dedupe window, by hit/miss")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private ResponseEntity.BodyBuilder accepted(Submission submission) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, statusLocation(submission.requestId()))
+                .header(REQUEST_ID_HEADER, submission.requestId());
+        if (submission.duplicate()) {
+            builder.header(IDEMPOTENT_REPLAYED_HEADER, "true");
+        }
+        return builder;
+    }
+
+    private Counter sendCounter(String topic, String result) {
+        return Counter.builder("soil.analysis.send")
+                .description("Soil analysis records handed to Kafka, by delivery outcome")
+                .tag("topic", topic)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private ResponseEntity<String> rejected(SoilAnalysisRejectedException e) {
+        log.warn("Rejecting soil analysis request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Soil analysis service is busy, please retry shortly");
+    }
+
+    // Bulk imports go to the regular topic so they cannot delay farmers waiting in the app
+    private String topicForLane(String lane, String defaultLane) {
+        String effectiveLane = lane != null && !lane.isBlank() ? lane.trim() : defaultLane;
+        return "bulk".equalsIgnoreCase(effectiveLane) ? SOIL_ANALYSIS_TOPIC : SOIL_ANALYSIS_PRIORITY_TOPIC;
+    }
+
+    private String statusLocation(String requestId) {
+        return "/api/producer/soil-analysis/" + requestId;
+    }
+
+    // Moves the image bytes into the blob store so the record only carries the reference
+    private void applyClaimCheck(SoilData soilData) throws IOException {
+        if (!claimCheckEnabled || soilData.getSoilImage() == null || soilData.getSoilImage().length == 0) {
+            return;
+        }
+        soilData.setSoilImageRef(blobStore.put(soilData.getSoilImage()));
+        soilData.setSoilImage(null);
+    }
+
+    private record Submission(String requestId, boolean duplicate) {
+    }
+
     private String getAnalysisMethodDescription(String analysisMethod) {
         switch (analysisMethod) {
             case "PROVIDED_AND_IMAGE":
@@ -0,0 +1,43 @@
+package com.ai.producer.kafka;
+
+import com.ai.producer.entity.FertilizerRecommendation;
+import com.ai.producer.storage.SoilAnalysisResultStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationListener implements ConsumerSeekAware {
+
+    private final SoilAnalysisResultStore resultStore;
+
+    @KafkaListener(topics = "fertilizer-recommendation-topic", containerFactory = "recommendationListenerContainerFactory")
+    public void onRecommendation(@Payload(required = false) FertilizerRecommendation recommendation,
+                                 @Header(KafkaHeaders.RECEIVED_KEY) String requestId) {
+        if (recommendation == null) {
+            return; // Tombstone
+        }
+        if (recommendation.getRequestId() == null) {
+            recommendation.setRequestId(requestId);
+        }
+        resultStore.complete(recommendation);
+        log.debug("Stored recommendation for request {}", requestId);
+    }
+
+    // The store is in memory, so every (re)assignment rebuilds it from the retained results rather than
+    // resuming from the group's committed offsets
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToBeginning(assignments.keySet());
+    }
+}
@@ -0,0 +1,13 @@
+package com.ai.producer.kafka;
+
+/**
+ * Thrown when the Kafka producer cannot accept a record within {@code max.block.ms}
+ * (send buffer full or metadata unavailable), or when the image compression pool is saturated;
+ * mapped to 503 so clients back off and retry.
+ */
+public class SoilAnalysisRejectedException extends RuntimeException {
+
+    public SoilAnalysisRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
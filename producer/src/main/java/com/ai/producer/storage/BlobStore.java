@@ -0,0 +1,17 @@
+package com.ai.producer.storage;
+
+import java.io.IOException;
+
+/**
+ * Content-addressed store for payloads that are too large to travel inside Kafka records.
+ * A blob is referenced by the lowercase hex SHA-256 of its bytes, so identical images are stored once.
+ */
+public interface BlobStore {
+
+    /**
+     * @return the reference (SHA-256 hex) under which the content can be fetched again
+     */
+    String put(byte[] content) throws IOException;
+
+    byte[] get(String ref) throws IOException;
+}
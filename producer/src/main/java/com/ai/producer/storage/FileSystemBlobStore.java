@@ -0,0 +1,115 @@
+package com.ai.producer.storage;
+
+import com.ai.producer.util.HashUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Blobs live on the shared directory for {@code blob-store.retention} after their last upload, which has to cover
+ * the queueing time plus the whole ai-service retry horizon (10s + 1m + 10m by default); a periodic sweep deletes
+ * older ones. Re-uploading identical content refreshes the blob's timestamp so it is not swept from under a new
+ * request.
+ */
+@Component
+@Slf4j
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Pattern REF_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final Duration retention;
+
+    public FileSystemBlobStore(@Value("${blob-store.directory}") String directory,
+                               @Value("${blob-store.retention:1h}") Duration retention) throws IOException {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        this.retention = retention;
+        Files.createDirectories(root);
+        log.info("Blob store directory: {}, retention: {}", root, retention);
+    }
+
+    @Override
+    public String put(byte[] content) throws IOException {
+        String ref = HashUtils.sha256Hex(content);
+        Path target = pathFor(ref);
+        if (Files.exists(target)) {
+            try {
+                // Same content already stored; restart its retention for this request
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                return ref;
+            } catch (IOException e) {
+                // Swept in the meantime: write it again below
+            }
+        }
+
+        Files.createDirectories(target.getParent());
+        // Write to a temp file first so readers never observe a partially written blob
+        Path temp = Files.createTempFile(target.getParent(), ref, ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return ref;
+    }
+
+    @Override
+    public byte[] get(String ref) throws IOException {
+        return Files.readAllBytes(pathFor(ref));
+    }
+
+    @Scheduled(fixedDelayString = "${blob-store.sweep-interval:5m}", initialDelayString = "${blob-store.sweep-interval:5m}")
+    public void sweepExpired() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(retention));
+        AtomicInteger deleted = new AtomicInteger();
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> isOlderThan(file, cutoff))
+                    .forEach(file -> {
+                        try {
+                            if (Files.deleteIfExists(file)) {
+                                deleted.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            log.warn("Could not delete expired blob {}: {}", file, e.getMessage());
+                        }
+                    });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Blob store sweep failed: {}", e.getMessage());
+        }
+        if (deleted.get() > 0) {
+            log.info("Blob store sweep deleted {} blobs older than {}", deleted.get(), retention);
+        }
+    }
+
+    private boolean isOlderThan(Path file, FileTime cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).compareTo(cutoff) < 0;
+        } catch (IOException e) {
+            return false; // Already gone
+        }
+    }
+
+    // Two-character fan-out keeps directory listings small
+    private Path pathFor(String ref) {
+        if (ref == null || !REF_PATTERN.matcher(ref).matches()) {
+            throw new IllegalArgumentException("Invalid blob reference: " + ref);
+        }
+        return root.resolve(ref.substring(0, 2)).resolve(ref);
+    }
+}
@@ -0,0 +1,22 @@
+package com.ai.producer.storage;
+
+import java.time.Duration;
+
+/**
+ * Dedupe window mapping an idempotency key to the request ID it was first accepted under.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Records {@code requestId} for {@code key} unless the key is already present.
+     *
+     * @return the request ID already recorded for the key, or {@code null} if this call claimed it
+     */
+    String putIfAbsent(String key, String requestId, Duration window);
+
+    /**
+     * Releases a claim (e.g. the record never reached Kafka) so the client can retry; no-op if the key
+     * now belongs to a different request.
+     */
+    void remove(String key, String requestId);
+}
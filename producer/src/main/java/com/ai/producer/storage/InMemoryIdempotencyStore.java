@@ -0,0 +1,63 @@
+package com.ai.producer.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Per-instance window; use the Redis store when several producer instances sit behind a load balancer
+@Component
+@ConditionalOnProperty(name = "soil-analysis.idempotency.redis.enabled", havingValue = "false", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final int maxEntries;
+    // Insertion-ordered; with a single window length the eldest entry is also the first to expire
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public InMemoryIdempotencyStore(@Value("${soil-analysis.idempotency.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public synchronized String putIfAbsent(String key, String requestId, Duration window) {
+        long now = System.nanoTime();
+        evictExpired(now);
+
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            return existing.requestId;
+        }
+        entries.put(key, new Entry(requestId, now + window.toNanos()));
+        if (entries.size() > maxEntries) {
+            Iterator<String> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void remove(String key, String requestId) {
+        Entry existing = entries.get(key);
+        if (existing != null && existing.requestId.equals(requestId)) {
+            entries.remove(key);
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiresAtNanos - now > 0) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private record Entry(String requestId, long expiresAtNanos) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.ai.producer.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "soil-analysis.idempotency.redis.enabled", havingValue = "true")
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static final String KEY_PREFIX = "soil-analysis-idempotency:";
+
+    // Delete only if the key still maps to the caller's request
+    private static final RedisScript<Long> REMOVE_IF_OWNER = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisIdempotencyStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public String putIfAbsent(String key, String requestId, Duration window) {
+        try {
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, requestId, window);
+            if (Boolean.TRUE.equals(claimed)) {
+                return null;
+            }
+            String existing = redisTemplate.opsForValue().get(KEY_PREFIX + key);
+            // Expired between the two calls: treat as new rather than failing the request
+            return existing;
+        } catch (Exception e) {
+            // Dedupe is an optimisation; an unavailable Redis must not block submissions
+            log.warn("Redis idempotency lookup failed, accepting request: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void remove(String key, String requestId) {
+        try {
+            redisTemplate.execute(REMOVE_IF_OWNER, List.of(KEY_PREFIX + key), requestId);
+        } catch (Exception e) {
+            log.warn("Redis idempotency release failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ai.producer.storage;
+
+import com.ai.producer.entity.FertilizerRecommendation;
+import com.ai.producer.entity.SoilAnalysisStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Local view of soil-analysis request status. Completed results are fed from the compacted
+ * fertilizer-recommendation-topic, which every instance replays from the beginning, so any instance can
+ * answer for any request once its result is published (for as long as the topic retains it, 24h by default). Pending entries exist only on the accepting instance.
+ */
+@Component
+public class SoilAnalysisResultStore {
+
+    private final Map<String, SoilAnalysisStatus> entries;
+
+    public SoilAnalysisResultStore(@Value("${soil-analysis.results.max-entries:100000}") int maxEntries) {
+        // Access-ordered LRU so the replayed topic cannot grow the heap without bound
+        this.entries = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SoilAnalysisStatus> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized void markPending(String requestId) {
+        entries.putIfAbsent(requestId, SoilAnalysisStatus.builder()
+                .requestId(requestId)
+                .status(SoilAnalysisStatus.Status.PENDING)
+                .submittedAt(LocalDateTime.now())
+                .build());
+    }
+
+    // Delivery failures only override a pending entry; a result that already arrived wins
+    public synchronized void markFailed(String requestId, String error) {
+        entries.computeIfPresent(requestId, (id, status) -> status.getStatus() != SoilAnalysisStatus.Status.PENDING
+                ? status
+                : SoilAnalysisStatus.builder()
+                        .requestId(id)
+                        .status(SoilAnalysisStatus.Status.FAILED)
+                        .submittedAt(status.getSubmittedAt())
+                        .error(error)
+                        .build());
+    }
+
+    public synchronized void remove(String requestId) {
+        entries.remove(requestId);
+    }
+
+    public synchronized void complete(FertilizerRecommendation recommendation) {
+        SoilAnalysisStatus previous = entries.get(recommendation.getRequestId());
+        entries.put(recommendation.getRequestId(), SoilAnalysisStatus.builder()
+                .requestId(recommendation.getRequestId())
+                .status(SoilAnalysisStatus.Status.COMPLETED)
+                .submittedAt(previous != null ? previous.getSubmittedAt() : null)
+                .completedAt(recommendation.getCreatedAt() != null ? recommendation.getCreatedAt() : LocalDateTime.now())
+                .recommendation(recommendation)
+                .build());
+    }
+
+    public synchronized Optional<SoilAnalysisStatus> find(String requestId) {
+        return Optional.ofNullable(entries.get(requestId));
+    }
+}
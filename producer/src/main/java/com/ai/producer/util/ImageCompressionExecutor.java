@@ -0,0 +1,127 @@
+package com.ai.producer.util;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs image compression on a dedicated pool sized to the CPU count, off the Tomcat request threads. The
+ * queue is bounded: once it is full {@link #compress} throws {@link RejectedExecutionException} straight
+ * away so the caller can answer 503 instead of letting a burst of uploads pile up behind the encoder.
+ */
+@Component
+@Slf4j
+public class ImageCompressionExecutor {
+
+    private final ImageCompressionUtil imageCompressionUtil;
+    private final ThreadPoolExecutor threadPool;
+    private final ExecutorService executor;
+    private final Timer queueTime;
+    private final Timer compressTime;
+
+    public ImageCompressionExecutor(ImageCompressionUtil imageCompressionUtil,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${image-compression.executor.threads:0}") int threads,
+                                    @Value("${image-compression.executor.queue-capacity:32}") int queueCapacity) {
+        this.imageCompressionUtil = imageCompressionUtil;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.threadPool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-compression-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // executor.queued / executor.active / executor.pool.size under name=image.compression
+        ExecutorServiceMetrics.monitor(meterRegistry, threadPool, "image.compression");
+        // Carries the request's trace context onto the worker so compression stays in the upload's trace
+        this.executor = ContextExecutorService.wrap(threadPool, () -> ContextSnapshotFactory.builder().build().captureAll());
+        this.queueTime = stageTimer(meterRegistry, "queue");
+        this.compressTime = stageTimer(meterRegistry, "compress");
+        log.info("Image compression pool: {} threads, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * @return the compressed image; completes exceptionally with the {@link java.io.IOException} from
+     *         {@link ImageCompressionUtil#compressImage} (wrapped in a {@link CompletionException}) if the image
+     *         cannot be decoded
+     * @throws RejectedExecutionException when the pool and its queue are full
+     */
+    public CompletableFuture<byte[]> compress(byte[] originalImage) {
+        return submit(() -> imageCompressionUtil.compressImage(originalImage));
+    }
+
+    /**
+     * Same as {@link #compress(byte[])} for an upload spooled to disk; the file is deleted once compression
+     * finishes or the task is rejected.
+     */
+    public CompletableFuture<byte[]> compress(Path spooledImage) {
+        try {
+            return submit(() -> imageCompressionUtil.compressImage(spooledImage))
+                    .whenComplete((compressed, ex) -> delete(spooledImage));
+        } catch (RejectedExecutionException e) {
+            delete(spooledImage);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<byte[]> submit(CompressionTask task) {
+        long queuedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            long startedAt = System.nanoTime();
+            queueTime.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                return task.run();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                compressTime.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        }, executor);
+    }
+
+    private void delete(Path spooledImage) {
+        try {
+            Files.deleteIfExists(spooledImage);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}: {}", spooledImage, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @FunctionalInterface
+    private interface CompressionTask {
+        byte[] run() throws IOException;
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("soil.analysis.upload.stage")
+                .description("Time spent per stage of a soil analysis upload")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+}
@@ -1,14 +1,23 @@
 package com.ai.producer.util;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
 
 @Component
 @Slf4j
@@ -18,49 +27,131 @@ public class ImageCompressionUtil {
     private static final int MAX_HEIGHT = 600;
     private static final int MAX_FILE_SIZE = 500 * 1024; // 500KB
 
-    public byte[] compressImage(byte[] originalImage) throws IOException {
-        try {
-            // Read original image
-            BufferedImage original = ImageIO.read(new ByteArrayInputStream(originalImage));
-            if (original == null) {
-                throw new IOException("Invalid image format");
-            }
+    private static final float MAX_QUALITY = 0.8f;
+    private static final float MIN_QUALITY = 0.3f; // Don't go below 30% quality
+    // Granularity of the old 0.1 step search; a fitting encode this close to the limit is not refined further
+    private static final float QUALITY_STEP = 0.1f;
+    // Estimates aim a little under the limit so the predicted quality usually fits on the first try
+    private static final int TARGET_SIZE = (int) (MAX_FILE_SIZE * 0.95);
+    // JPEG size is roughly exponential in quality; typical photos shrink ~3x between quality 0.8 and 0.3.
+    // Only used until a second encode gives the real slope for this image.
+    private static final double DEFAULT_LOG_SIZE_SLOPE = Math.log(3) / (MAX_QUALITY - MIN_QUALITY);
+
+    private final ObservationRegistry observationRegistry;
+    private final DistributionSummary compressionRatio;
+    private final DistributionSummary compressionPasses;
+
+    public ImageCompressionUtil(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.compressionRatio = DistributionSummary.builder("soil.image.compression.ratio")
+                .description("Original size divided by compressed size")
+                .publishPercentiles(0.5, 0.9)
+                .register(meterRegistry);
+        this.compressionPasses = DistributionSummary.builder("soil.image.compression.passes")
+                .description("JPEG encodes needed to get an upload under the size limit")
+                .register(meterRegistry);
+    }
 
-            // Calculate new dimensions while maintaining aspect ratio
-            Dimension newDimensions = calculateDimensions(original.getWidth(), original.getHeight());
+    public byte[] compressImage(byte[] originalImage) throws IOException {
+        return compressImage(() -> ImageIO.createImageInputStream(new ByteArrayInputStream(originalImage)),
+                originalImage.length);
+    }
 
-            // Resize image
-            BufferedImage resized = new BufferedImage(
-                    newDimensions.width, newDimensions.height, BufferedImage.TYPE_INT_RGB);
+    // Decodes straight from the spooled upload through a file-backed stream, so it is never read onto the heap
+    public byte[] compressImage(Path originalImage) throws IOException {
+        return compressImage(() -> ImageIO.createImageInputStream(originalImage.toFile()), Files.size(originalImage));
+    }
 
-            Graphics2D g2d = resized.createGraphics();
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.drawImage(original, 0, 0, newDimensions.width, newDimensions.height, null);
-            g2d.dispose();
+    // Traced so a slow request can be attributed to compression rather than Kafka or Gemini;
+    // the observation also records the soil.image.compression timer
+    private byte[] compressImage(ImageSource source, long originalSize) throws IOException {
+        Observation observation = Observation.createNotStarted("soil.image.compression", observationRegistry)
+                .highCardinalityKeyValue("image.original.bytes", String.valueOf(originalSize));
+        return observation.observeChecked(() -> {
+            Encoded compressed = compress(source, originalSize);
+            observation.highCardinalityKeyValue("image.compressed.bytes", String.valueOf(compressed.data().length));
+            observation.lowCardinalityKeyValue("image.compression.passes", String.valueOf(compressed.passes()));
+            compressionRatio.record((double) originalSize / compressed.data().length);
+            compressionPasses.record(compressed.passes());
+            return compressed.data();
+        });
+    }
 
-            // Compress with different quality levels until under size limit
-            float quality = 0.8f;
-            byte[] compressed;
+    private Encoded compress(ImageSource source, long originalSize) throws IOException {
+        try {
+            BufferedImage resized = decodeResized(source);
 
-            do {
-                compressed = compressWithQuality(resized, quality);
-                quality -= 0.1f;
+            Encoded compressed = encodeUnderLimit(resized);
 
-                if (quality < 0.3f) break; // Don't go below 30% quality
+            log.info("Image compressed: Original size: {} KB, Compressed size: {} KB, Quality: {}%, Passes: {}",
+                    originalSize / 1024, compressed.data().length / 1024,
+                    Math.round(compressed.quality() * 100), compressed.passes());
 
-            } while (compressed.length > MAX_FILE_SIZE);
+            return compressed;
 
-            log.info("Image compressed: Original size: {} KB, Compressed size: {} KB, Quality: {}%",
-                    originalImage.length / 1024, compressed.length / 1024, (quality + 0.1f) * 100);
+        } catch (IOException e) {
+            // Undecodable or unsupported input; bugs and resource errors propagate as they are
+            log.warn("Error compressing image: {}", e.getMessage());
+            throw new IOException("Failed to compress image: " + e.getMessage(), e);
+        }
+    }
 
-            return compressed;
+    /**
+     * Decodes the upload at roughly the output size instead of full resolution. The dimensions come from the
+     * header, and the reader skips source pixels ({@link ImageReadParam#setSourceSubsampling}) so a 48 MP photo
+     * is never materialised as a ~190 MB raster. Subsampling stops at about 2x the target; the remaining
+     * downscale is done with filtering to avoid the aliasing of pure pixel skipping. The whole frame is always
+     * kept, so no source region is set.
+     */
+    private BufferedImage decodeResized(ImageSource source) throws IOException {
+        try (ImageInputStream input = source.open()) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Invalid image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                // Calculate new dimensions while maintaining aspect ratio
+                Dimension newDimensions = calculateDimensions(width, height);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.min(width / newDimensions.width, height / newDimensions.height) / 2);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                log.debug("Decoded {}x{} image at 1/{} as {}x{} for {}x{} output", width, height, subsampling,
+                        decoded.getWidth(), decoded.getHeight(), newDimensions.width, newDimensions.height);
+                return resize(decoded, newDimensions);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Error compressing image", e);
-            throw new IOException("Failed to compress image: " + e.getMessage());
+    // Halves with bilinear filtering while the source is more than 2x the target, then draws the final size
+    // into an RGB image (JPEG has no alpha)
+    private BufferedImage resize(BufferedImage source, Dimension target) {
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= target.width && current.getHeight() / 2 >= target.height) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
         }
+        return draw(current, target.width, target.height);
+    }
+
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g2d = resized.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return resized;
     }
 
     private Dimension calculateDimensions(int originalWidth, int originalHeight) {
@@ -73,33 +164,74 @@ public class ImageCompressionUtil {
             return new Dimension(originalWidth, originalHeight);
         }
 
-        int newWidth = (int) (originalWidth * ratio);
-        int newHeight = (int) (originalHeight * ratio);
+        // A very thin strip would otherwise round its short side to 0
+        int newWidth = Math.max(1, (int) (originalWidth * ratio));
+        int newHeight = Math.max(1, (int) (originalHeight * ratio));
 
         return new Dimension(newWidth, newHeight);
     }
 
-    private byte[] compressWithQuality(BufferedImage image, float quality) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        var writers = ImageIO.getImageWritersByFormatName("jpg");
-        if (!writers.hasNext()) {
-            throw new IOException("No JPEG writer found");
+    /**
+     * Finds the highest quality in [0.3, 0.8] that fits under {@link #MAX_FILE_SIZE} in at most
+     * three encodes. The first encode is at 0.8; after that the quality is predicted from a
+     * log-linear size model, seeded with a typical slope and refitted from this image's own encodes, and the
+     * search stays bracketed between the best fitting and the smallest too-large quality. If nothing fits,
+     * the last (lowest-quality) encode is returned, as with the old floor at 0.3.
+     */
+    private Encoded encodeUnderLimit(BufferedImage image) throws IOException {
+        JpegEncoder encoder = JpegEncoder.forCurrentThread();
+
+        int size = encoder.encode(image, MAX_QUALITY);
+        if (size <= MAX_FILE_SIZE) {
+            return new Encoded(encoder.toByteArray(), MAX_QUALITY, 1);
+        }
+        float tooLargeQuality = MAX_QUALITY;
+        int tooLargeSize = size;
+
+        float quality = clampQuality(MAX_QUALITY + (float) (Math.log((double) TARGET_SIZE / size) / DEFAULT_LOG_SIZE_SLOPE));
+        size = encoder.encode(image, quality);
+        if (size <= MAX_FILE_SIZE) {
+            Encoded fitting = new Encoded(encoder.toByteArray(), quality, 2);
+            if (tooLargeQuality - quality <= QUALITY_STEP) {
+                return fitting;
+            }
+            // Room to raise the quality: interpolate between the fitting and the too-large encode
+            float refined = interpolateQuality(quality, size, tooLargeQuality, tooLargeSize);
+            if (refined - quality < QUALITY_STEP / 2) {
+                return fitting;
+            }
+            return encoder.encode(image, refined) <= MAX_FILE_SIZE
+                    ? new Encoded(encoder.toByteArray(), refined, 3)
+                    : fitting;
         }
+        if (quality <= MIN_QUALITY) {
+            return new Encoded(encoder.toByteArray(), quality, 2);
+        }
+
+        // Both encodes too large: extrapolate with this image's measured slope, never below the floor
+        float last = Math.min(quality, interpolateQuality(quality, size, tooLargeQuality, tooLargeSize));
+        encoder.encode(image, last);
+        return new Encoded(encoder.toByteArray(), last, 3);
+    }
 
-        var writer = writers.next();
-        var ios = ImageIO.createImageOutputStream(baos);
-        writer.setOutput(ios);
+    // Quality at which the log-size line through two measured encodes reaches TARGET_SIZE
+    private float interpolateQuality(float q1, int size1, float q2, int size2) {
+        double slope = Math.log((double) size2 / size1) / (q2 - q1);
+        if (!(slope > 0)) {
+            slope = DEFAULT_LOG_SIZE_SLOPE;
+        }
+        return clampQuality(q1 + (float) (Math.log((double) TARGET_SIZE / size1) / slope));
+    }
 
-        var param = writer.getDefaultWriteParam();
-        param.setCompressionMode(javax.imageio.ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionQuality(quality);
+    private float clampQuality(float quality) {
+        return Math.max(MIN_QUALITY, Math.min(MAX_QUALITY, quality));
+    }
 
-        writer.write(null, new javax.imageio.IIOImage(image, null, null), param);
-        writer.dispose();
-        ios.close();
+    private record Encoded(byte[] data, float quality, int passes) {
+    }
 
-        return baos.toByteArray();
+    @FunctionalInterface
+    private interface ImageSource {
+        ImageInputStream open() throws IOException;
     }
 }
-
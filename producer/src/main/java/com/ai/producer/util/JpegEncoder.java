@@ -0,0 +1,63 @@
+package com.ai.producer.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Per-thread JPEG writer and output buffer, reused across quality passes and uploads instead of looking up a
+ * new {@link ImageWriter} and growing a fresh buffer for every encode. Not thread-safe; obtain it with
+ * {@link #forCurrentThread()} and do not hand it to another thread.
+ */
+final class JpegEncoder {
+
+    private static final ThreadLocal<JpegEncoder> ENCODERS = ThreadLocal.withInitial(JpegEncoder::new);
+
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    // Keeps its grown backing array across reset(), so steady-state encodes do not reallocate
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 * 1024);
+
+    private JpegEncoder() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No JPEG writer found");
+        }
+        this.writer = writers.next();
+        this.param = writer.getDefaultWriteParam();
+        this.param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    }
+
+    static JpegEncoder forCurrentThread() {
+        return ENCODERS.get();
+    }
+
+    /**
+     * Encodes into the reusable buffer.
+     *
+     * @return the encoded size in bytes; the bytes stay available through {@link #toByteArray()} until the next encode
+     */
+    int encode(BufferedImage image, float quality) throws IOException {
+        buffer.reset();
+        param.setCompressionQuality(quality);
+        // In-memory stream: ImageIO.createImageOutputStream may pick a temp-file cache depending on ImageIO settings
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+        }
+        return buffer.size();
+    }
+
+    byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+}
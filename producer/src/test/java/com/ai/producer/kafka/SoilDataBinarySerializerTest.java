@@ -0,0 +1,76 @@
+package com.ai.producer.kafka;
+
+import com.ai.producer.entity.SoilData;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SoilDataBinarySerializerTest {
+
+	/**
+	 * Version 1 wire format of {@link #fixture()}. The ai-service SoilDataBinaryDeserializerTest decodes the same
+	 * bytes; change both together, and only alongside a version bump.
+	 */
+	static final byte[] GOLDEN_V1 = HexFormat.of().parseHex(
+			"534401"                  // magic "SD", version 1
+			+ "000000054c4f414d59"    // soilType "LOAMY"
+			+ "ffffffff"              // soilImageRef null
+			+ "000000057768656174"    // cropType "wheat"
+			+ "0000000450756e65"      // location "Pune"
+			+ "000000026869"          // language "hi"
+			+ "014004000000000000"    // areaValue present, 2.5
+			+ "02"                    // areaUnit HECTARE
+			+ "01"                    // season RABI
+			+ "00000004ffd8ff00");    // soilImage, 4 bytes
+
+	private final SoilDataBinarySerializer serializer = new SoilDataBinarySerializer();
+
+	@Test
+	void serializesFixtureToGoldenBytes() {
+		assertThat(serializer.serialize("soil-analysis-topic", fixture())).isEqualTo(GOLDEN_V1);
+	}
+
+	@Test
+	void encodesAbsentFieldsAsMarkers() {
+		SoilData empty = new SoilData();
+
+		assertThat(serializer.serialize("soil-analysis-topic", empty)).isEqualTo(HexFormat.of().parseHex(
+				"534401" + "ffffffff".repeat(5) + "00" + "ff" + "ff" + "ffffffff"));
+		assertThat(serializer.serialize("soil-analysis-topic", null)).isNull();
+	}
+
+	@Test
+	void binaryRecordIsSmallerThanJson() {
+		SoilData soilData = fixture();
+		byte[] image = new byte[200 * 1024];
+		new Random(42).nextBytes(image);
+		soilData.setSoilImage(image);
+
+		int binary = serializer.serialize("soil-analysis-topic", soilData).length;
+		int json;
+		try (JsonSerializer<SoilData> jsonSerializer = new JsonSerializer<>()) {
+			json = jsonSerializer.serialize("soil-analysis-topic", soilData).length;
+		}
+
+		// JSON carries the image as base64, a third larger than the raw bytes
+		assertThat(binary).isLessThan(image.length + 128);
+		assertThat(json).isGreaterThan(image.length * 4 / 3);
+	}
+
+	static SoilData fixture() {
+		SoilData soilData = new SoilData();
+		soilData.setSoilType("LOAMY");
+		soilData.setCropType("wheat");
+		soilData.setLocation("Pune");
+		soilData.setLanguage("hi");
+		soilData.setAreaValue(2.5);
+		soilData.setAreaUnit(SoilData.AreaUnit.HECTARE);
+		soilData.setSeason(SoilData.Season.RABI);
+		soilData.setSoilImage(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00});
+		return soilData;
+	}
+}